@@ -0,0 +1,43 @@
+package forensic;
+
+/**
+ * This class represents a node of the balanced (AVL) profile tree.
+ *
+ * It is a TreeNode that also knows the height of its subtree, so a balanced tree
+ * is still a BST of TreeNodes and every method that walks the tree works on it unchanged.
+ *
+ * @see ForensicAnalysis#ForensicAnalysis(boolean)
+ */
+public class AVLTreeNode extends TreeNode {
+    private int height; // number of nodes on the longest path down to a leaf (a leaf has height 1)
+
+    /**
+     * Creates a leaf holding a profile.
+     *
+     * @param name    the full name of this person
+     * @param profile the profile this node contains as its data
+     */
+    public AVLTreeNode(String name, Profile profile) {
+        super(name, profile, null, null);
+        this.height = 1;
+    }
+
+    /**
+     * Gets the height of the subtree rooted at this node
+     *
+     * @return the height, 1 for a leaf
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Sets the height of the subtree rooted at this node
+     *
+     * @param height the new height
+     */
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+}
@@ -1,5 +1,16 @@
 package forensic;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * This class represents a forensic analysis system that manages DNA data using
  * BSTs.
@@ -12,11 +23,35 @@ public class ForensicAnalysis {
     private TreeNode treeRoot;            // BST's root
     private String firstUnknownSequence;
     private String secondUnknownSequence;
+    private boolean balanced;             // true if the BST is kept balanced as an AVL tree
+
+    // STR string -> occurrences in the combined unknown sequences, for the sequences it was counted in
+    private Map<String, Integer> strOccurrences;
+    private String countedFirstSequence;
+    private String countedSecondSequence;
 
     public ForensicAnalysis () {
         treeRoot = null;
         firstUnknownSequence = null;
         secondUnknownSequence = null;
+        balanced = false;
+        strOccurrences = null;
+    }
+
+    /**
+     * Creates a forensic analysis whose BST is optionally kept balanced.
+     * 
+     * When balanced is true, insertPerson and removePerson (and so cleanupTree) keep the
+     * tree an AVL tree of AVLTreeNodes: the heights of the two subtrees of every node differ
+     * by at most one, so the tree has height O(log n) even when the database arrives sorted
+     * by name. The tree is still a BST of TreeNodes, so every traversal works unchanged,
+     * but its shape differs from the plain BST's.
+     * 
+     * @param balanced true to keep the BST balanced
+     */
+    public ForensicAnalysis (boolean balanced) {
+        this();
+        this.balanced = balanced;
     }
 
     /**
@@ -86,6 +121,10 @@ public class ForensicAnalysis {
      */
     public void insertPerson(String name, Profile newProfile) {
 
+        if (balanced) {
+            treeRoot = insertBalanced(treeRoot, name, newProfile);
+            return;
+        }
         if (treeRoot == null) {
             treeRoot = new TreeNode(name, newProfile, null, null);
         }
@@ -173,23 +212,129 @@ public class ForensicAnalysis {
      * UP)
      * - If occurrences THROUGHOUT DNA (first + second sequence combined) matches
      * occurrences, add a match
+     * 
+     * The occurrences of every distinct STR in the database are counted up front in one
+     * pass over the combined sequence (see STRCounter), with the same counts
+     * numberOfOccurrences gives, and every profile then looks its STRs up.
+     * Counts are kept until the unknown sequences change, so flagging again only
+     * counts STRs that were not in the database before.
      */
     public void flagProfilesOfInterest() {
-        String combinedSequence = firstUnknownSequence + secondUnknownSequence;
-        flagProfilesOfInterest(treeRoot, combinedSequence);
+        flagProfilesOfInterest(treeRoot, countDatabaseStrs());
+    }
+
+    /**
+     * Same as flagProfilesOfInterest, but the profiles are evaluated on several threads:
+     * the tree is split into subtrees that are flagged as fork/join tasks on the common pool.
+     * Every profile is evaluated on its own, so the profiles marked are the same as with
+     * flagProfilesOfInterest. The tree must not change while this runs.
+     * 
+     * Subtrees are split down to a depth that gives each thread many tasks to steal;
+     * a balanced tree (see ForensicAnalysis(boolean)) splits evenly, a degenerate one barely splits.
+     */
+    public void flagProfilesOfInterestInParallel() {
+        Map<String, Integer> occurrences = countDatabaseStrs();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int splitDepth = 32 - Integer.numberOfLeadingZeros(pool.getParallelism()) + 6; // about 64 tasks per thread
+        pool.invoke(new FlagTask(treeRoot, occurrences, splitDepth));
+    }
+
+    /*
+     * Flags the subtree at node: forks the left subtree and flags the right one in this
+     * thread until splitDepth levels down, then walks the rest of the subtree iteratively
+     */
+    private static class FlagTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final TreeNode node;
+        private final Map<String, Integer> occurrences;
+        private final int splitDepth;
+
+        FlagTask(TreeNode node, Map<String, Integer> occurrences, int splitDepth) {
+            this.node = node;
+            this.occurrences = occurrences;
+            this.splitDepth = splitDepth;
+        }
+
+        @Override
+        protected void compute() {
+            if (node == null) {
+                return;
+            }
+            if (splitDepth == 0) {
+                Deque<TreeNode> stack = new ArrayDeque<>();
+                stack.push(node);
+                while (!stack.isEmpty()) {
+                    TreeNode current = stack.pop();
+                    flagProfile(current.getProfile(), occurrences);
+                    if (current.getRight() != null) {
+                        stack.push(current.getRight());
+                    }
+                    if (current.getLeft() != null) {
+                        stack.push(current.getLeft());
+                    }
+                }
+                return;
+            }
+            flagProfile(node.getProfile(), occurrences);
+            FlagTask left = new FlagTask(node.getLeft(), occurrences, splitDepth - 1);
+            left.fork();
+            new FlagTask(node.getRight(), occurrences, splitDepth - 1).compute();
+            left.join();
+        }
+    }
+
+    /*
+     * Counts the STRs of the database that are not counted yet and returns every count
+     */
+    private Map<String, Integer> countDatabaseStrs() {
+        Map<String, Integer> occurrences = occurrenceCache();
+        Set<String> uncounted = new HashSet<>();
+        collectStrs(treeRoot, uncounted, occurrences);
+        if (!uncounted.isEmpty()) {
+            String combinedSequence = firstUnknownSequence + secondUnknownSequence;
+            occurrences.putAll(new STRCounter(uncounted).countAll(combinedSequence));
+        }
+        return occurrences;
     }
-    private void flagProfilesOfInterest(TreeNode node, String combinedSequence) {
+    private void collectStrs(TreeNode node, Set<String> uncounted, Map<String, Integer> occurrences) {
+        if (node == null) {
+            return;
+        }
+        Deque<TreeNode> stack = new ArrayDeque<>(); // no recursion, so a degenerate tree does not overflow the stack
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            TreeNode current = stack.pop();
+            for (STR str : current.getProfile().getStrs()) {
+                if (!occurrences.containsKey(str.getStrString())) {
+                    uncounted.add(str.getStrString());
+                }
+            }
+            if (current.getRight() != null) {
+                stack.push(current.getRight());
+            }
+            if (current.getLeft() != null) {
+                stack.push(current.getLeft());
+            }
+        }
+    }
+    private void flagProfilesOfInterest(TreeNode node, Map<String, Integer> occurrences) {
         if (node == null) {
             return;
         }
 
-        Profile profile = node.getProfile();
+        flagProfile(node.getProfile(), occurrences);
+
+        flagProfilesOfInterest(node.getLeft(), occurrences);
+        flagProfilesOfInterest(node.getRight(), occurrences);
+    }
+    private static void flagProfile(Profile profile, Map<String, Integer> occurrences) {
         STR[] strs = profile.getStrs();
         int matchingStrs = 0;
         for (int i = 0; i < strs.length; i++) {
             STR str = strs[i];
             int profileOccurrences = str.getOccurrences();
-            int combinedOccurrences = numberOfOccurrences(combinedSequence, str.getStrString());
+            int combinedOccurrences = occurrences.getOrDefault(str.getStrString(), 0);
             if (profileOccurrences == combinedOccurrences){
                 matchingStrs++;
             }
@@ -198,9 +343,37 @@ public class ForensicAnalysis {
         if (matchingStrs >= Math.ceil(strs.length / 2.0)) {
             profile.setInterestStatus(true);
         }
+    }
+
+    /**
+     * Gets the number of times an STR occurs in the combined unknown sequences.
+     * The count is computed once and remembered until the unknown sequences change.
+     * 
+     * @param strString the STR to count occurrences of
+     * @return the number of times STR appears in first + second unknown sequence
+     */
+    public int getSTROccurrences(String strString) {
+        Map<String, Integer> occurrences = occurrenceCache();
+        Integer count = occurrences.get(strString);
+        if (count == null) {
+            count = numberOfOccurrences(firstUnknownSequence + secondUnknownSequence, strString);
+            occurrences.put(strString, count);
+        }
+        return count;
+    }
 
-        flagProfilesOfInterest(node.getLeft(), combinedSequence);
-        flagProfilesOfInterest(node.getRight(), combinedSequence);
+    /*
+     * The remembered STR counts, emptied first if the unknown sequences are not the ones
+     * they were counted in (buildTree sets the sequences without going through the setters)
+     */
+    private Map<String, Integer> occurrenceCache() {
+        if (strOccurrences == null || countedFirstSequence != firstUnknownSequence
+                || countedSecondSequence != secondUnknownSequence) {
+            strOccurrences = new HashMap<>();
+            countedFirstSequence = firstUnknownSequence;
+            countedSecondSequence = secondUnknownSequence;
+        }
+        return strOccurrences;
     }
 
     /**
@@ -247,6 +420,10 @@ public class ForensicAnalysis {
      * @param fullName the full name of the person to delete
      */
     public void removePerson(String fullName) {
+        if (balanced) {
+            treeRoot = removeBalanced(treeRoot, fullName);
+            return;
+        }
         treeRoot = removePerson(treeRoot, fullName);
     }
     private TreeNode removePerson(TreeNode node, String fullName) {
@@ -285,20 +462,162 @@ public class ForensicAnalysis {
         node.setLeft(deleteMin(node.getLeft()));
         return node;
     }
+
+    /*
+     * AVL versions of insertPerson and removePerson. Every node of a balanced tree is an
+     * AVLTreeNode; each method returns the new root of the subtree it was given.
+     */
+    private TreeNode insertBalanced(TreeNode node, String name, Profile newProfile) {
+        if (node == null) {
+            return new AVLTreeNode(name, newProfile);
+        }
+        int cmp = name.compareTo(node.getName());
+        if (cmp < 0) {
+            node.setLeft(insertBalanced(node.getLeft(), name, newProfile));
+        } else if (cmp > 0) {
+            node.setRight(insertBalanced(node.getRight(), name, newProfile));
+        } else {
+            node.setProfile(newProfile);
+            return node;
+        }
+        return rebalance(node);
+    }
+    private TreeNode removeBalanced(TreeNode node, String fullName) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = fullName.compareTo(node.getName());
+        if (cmp < 0) {
+            node.setLeft(removeBalanced(node.getLeft(), fullName));
+        } else if (cmp > 0) {
+            node.setRight(removeBalanced(node.getRight(), fullName));
+        } else {
+            if (node.getRight() == null) {
+                return node.getLeft();
+            }
+            if (node.getLeft() == null) {
+                return node.getRight();
+            }
+            TreeNode temp = node;
+            node = min(temp.getRight());
+            node.setRight(deleteMinBalanced(temp.getRight()));
+            node.setLeft(temp.getLeft());
+        }
+        return rebalance(node);
+    }
+    private TreeNode deleteMinBalanced(TreeNode node) {
+        if (node.getLeft() == null) {
+            return node.getRight();
+        }
+        node.setLeft(deleteMinBalanced(node.getLeft()));
+        return rebalance(node);
+    }
+
+    /*
+     * Updates the height of node and rotates it if its subtrees' heights differ by two
+     */
+    private TreeNode rebalance(TreeNode node) {
+        updateHeight(node);
+        int balance = height(node.getLeft()) - height(node.getRight());
+        if (balance > 1) {
+            if (height(node.getLeft().getLeft()) < height(node.getLeft().getRight())) {
+                node.setLeft(rotateLeft(node.getLeft()));
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.getRight().getRight()) < height(node.getRight().getLeft())) {
+                node.setRight(rotateRight(node.getRight()));
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+    private TreeNode rotateLeft(TreeNode node) {
+        TreeNode right = node.getRight();
+        node.setRight(right.getLeft());
+        right.setLeft(node);
+        updateHeight(node);
+        updateHeight(right);
+        return right;
+    }
+    private TreeNode rotateRight(TreeNode node) {
+        TreeNode left = node.getLeft();
+        node.setLeft(left.getRight());
+        left.setRight(node);
+        updateHeight(node);
+        updateHeight(left);
+        return left;
+    }
+    private void updateHeight(TreeNode node) {
+        ((AVLTreeNode) node).setHeight(1 + Math.max(height(node.getLeft()), height(node.getRight())));
+    }
+    private int height(TreeNode node) {
+        return node == null ? 0 : ((AVLTreeNode) node).getHeight();
+    }
     
 
     /**
      * Clean up the tree by using previously written methods to remove unmarked
      * profiles.
      * Requires the use of getUnmarkedPeople and removePerson.
+     * 
+     * A balanced tree (see ForensicAnalysis(boolean)) has no particular shape to keep, so it
+     * is cleaned up with cleanupTreeInBulk instead.
      */
     public void cleanupTree() {
+        if (balanced) {
+            cleanupTreeInBulk();
+            return;
+        }
         String[] unmarkedPeople = getUnmarkedPeople();
         for (String person : unmarkedPeople) {
             removePerson(person);
         }
     }
 
+    /**
+     * Removes every unmarked profile in one pass, instead of one removePerson per name.
+     * 
+     * An in-order traversal collects the nodes of the marked profiles, which are then
+     * already sorted by name, and a balanced tree is rebuilt from them: the middle node
+     * becomes the root and each half becomes a subtree, recursively. This takes O(n) time
+     * however many profiles are removed. The nodes are reused, and the rebuilt tree is also
+     * a valid AVL tree, so this works for balanced trees too. The tree keeps the same profiles
+     * as after cleanupTree, but not the same shape.
+     */
+    public void cleanupTreeInBulk() {
+        List<TreeNode> marked = new ArrayList<>();
+        Deque<TreeNode> stack = new ArrayDeque<>();
+        TreeNode node = treeRoot;
+        while (node != null || !stack.isEmpty()) {
+            while (node != null) {
+                stack.push(node);
+                node = node.getLeft();
+            }
+            node = stack.pop();
+            TreeNode right = node.getRight();
+            if (node.getProfile().getMarkedStatus()) {
+                marked.add(node);
+            }
+            node = right;
+        }
+        treeRoot = buildBalanced(marked, 0, marked.size() - 1);
+    }
+    private TreeNode buildBalanced(List<TreeNode> nodes, int lo, int hi) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        TreeNode node = nodes.get(mid);
+        node.setLeft(buildBalanced(nodes, lo, mid - 1));
+        node.setRight(buildBalanced(nodes, mid + 1, hi));
+        if (node instanceof AVLTreeNode) {
+            updateHeight(node);
+        }
+        return node;
+    }
+
     /**
      * Gets the root of the binary search tree.
      *
@@ -317,6 +636,15 @@ public class ForensicAnalysis {
         treeRoot = newRoot;
     }
 
+    /**
+     * Checks whether the BST is kept balanced.
+     *
+     * @return true if insertPerson and removePerson keep the BST an AVL tree.
+     */
+    public boolean isBalanced() {
+        return balanced;
+    }
+
     /**
      * Gets the first unknown sequence.
      * 
@@ -333,6 +661,7 @@ public class ForensicAnalysis {
      */
     public void setFirstUnknownSequence(String newFirst) {
         firstUnknownSequence = newFirst;
+        strOccurrences = null;
     }
 
     /**
@@ -351,6 +680,7 @@ public class ForensicAnalysis {
      */
     public void setSecondUnknownSequence(String newSecond) {
         secondUnknownSequence = newSecond;
+        strOccurrences = null;
     }
 
 }
@@ -0,0 +1,110 @@
+package forensic;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * This class times the ForensicAnalysis tree operations on a synthetic database whose
+ * profiles arrive sorted by name, the worst case for the plain BST.
+ *
+ * The database has one profile per name "Person0000000, First", "Person0000001, First", ...
+ * with a few STRs each from a small pool, and two random unknown sequences. It is loaded with
+ * insertPerson in sorted order, then flagProfilesOfInterest, getMatchingProfileCount and
+ * cleanupTree are timed. Flagging is timed three times: the first pass also counts the STRs,
+ * the second (sequential) and third (flagProfilesOfInterestInParallel) reuse those counts.
+ * cleanupTree rebuilds the balanced tree in one pass (cleanupTreeInBulk) but removes profiles
+ * one at a time from the plain BST. The plain BST degenerates into a list (O(n^2) to build),
+ * so it is run on a smaller database than the balanced one.
+ *
+ * args[0] (optional) number of profiles for the balanced tree, default 1000000
+ * args[1] (optional) number of profiles for the plain BST, default 10000
+ *
+ * To run: java -Xss64m -Xmx2g -cp bin forensic.ProfileTreeBenchmark 1000000 10000
+ */
+public class ProfileTreeBenchmark {
+
+    private static final String[] STR_POOL = {
+        "AGAG", "CTGAC", "ACTGA", "TCACT", "GATCG", "GTGC", "ATA", "CAT", "AGATC", "AATG",
+        "TATC", "CTCT", "GGCC", "TTAA", "CACG", "AGCT", "CGCG", "TGTG", "AGGC", "CCGG"
+    };
+
+    public static void main(String[] args) {
+        int balancedProfiles = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int plainProfiles = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+        run(new ForensicAnalysis(true), "balanced", balancedProfiles);
+        run(new ForensicAnalysis(false), "plain", plainProfiles);
+    }
+
+    private static void run(ForensicAnalysis analysis, String label, int profiles) {
+        Random random = new Random(42);
+        analysis.setFirstUnknownSequence(randomSequence(random, 2000));
+        analysis.setSecondUnknownSequence(randomSequence(random, 2000));
+        String[] names = new String[profiles];
+        Profile[] database = new Profile[profiles];
+        for (int i = 0; i < profiles; i++) {
+            names[i] = String.format("Person%07d, First", i);
+            STR[] strs = new STR[1 + random.nextInt(4)];
+            for (int s = 0; s < strs.length; s++) {
+                strs[s] = new STR(STR_POOL[random.nextInt(STR_POOL.length)], random.nextInt(60));
+            }
+            database[i] = new Profile(strs);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < profiles; i++) {
+            analysis.insertPerson(names[i], database[i]);
+        }
+        long inserted = System.nanoTime();
+        int height = height(analysis.getTreeRoot());
+        long measured = System.nanoTime();
+        analysis.flagProfilesOfInterest();
+        long flagged = System.nanoTime();
+        analysis.flagProfilesOfInterest();
+        long reflagged = System.nanoTime();
+        analysis.flagProfilesOfInterestInParallel();
+        long parallelFlagged = System.nanoTime();
+        int marked = analysis.getMatchingProfileCount(true);
+        long counted = System.nanoTime();
+        analysis.cleanupTree();
+        long cleaned = System.nanoTime();
+
+        StdOut.printf("%-9s %8d profiles, height %7d: insert %8.1f ms, flag %8.1f / %8.1f / parallel %8.1f ms, count %7.1f ms, cleanup %8.1f ms (%d marked)%n",
+            label, profiles, height, (inserted - start) / 1e6, (flagged - measured) / 1e6,
+            (reflagged - flagged) / 1e6, (parallelFlagged - reflagged) / 1e6,
+            (counted - parallelFlagged) / 1e6, (cleaned - counted) / 1e6, marked);
+    }
+
+    /*
+     * Height of the tree, without recursion so a degenerate tree does not overflow the stack
+     */
+    private static int height(TreeNode root) {
+        int height = 0;
+        Deque<TreeNode> level = new ArrayDeque<TreeNode>();
+        if (root != null) {
+            level.add(root);
+        }
+        while (!level.isEmpty()) {
+            height++;
+            for (int i = level.size(); i > 0; i--) {
+                TreeNode node = level.poll();
+                if (node.getLeft() != null) {
+                    level.add(node.getLeft());
+                }
+                if (node.getRight() != null) {
+                    level.add(node.getRight());
+                }
+            }
+        }
+        return height;
+    }
+
+    private static String randomSequence(Random random, int length) {
+        char[] bases = new char[length];
+        for (int i = 0; i < length; i++) {
+            bases[i] = "ACGT".charAt(random.nextInt(4));
+        }
+        return new String(bases);
+    }
+}
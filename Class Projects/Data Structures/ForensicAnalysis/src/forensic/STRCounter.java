@@ -0,0 +1,202 @@
+package forensic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class counts the occurrences of many STRs in a DNA sequence with a single pass over
+ * the sequence, using an Aho-Corasick automaton built over the distinct STR strings.
+ *
+ * The automaton is a trie of the STRs in which every state also has a transition for every
+ * character of the alphabet (the characters used by the STRs), so scanning the sequence is one
+ * table lookup per character. Any other character sends the scan back to the start state.
+ * Each state lists the STRs that end there, including through its suffix links.
+ *
+ * Counts are the same as ForensicAnalysis's numberOfOccurrences: occurrences of one STR do not
+ * overlap, and the leftmost occurrence after the previous one is the one counted. Since all the
+ * occurrences of one STR are found in order of their position, an occurrence is counted
+ * when it starts at or after the end of the last one counted for the same STR.
+ */
+public class STRCounter {
+
+    private String[] strs;                // distinct STR strings, strs[i] is STR number i
+    private HashMap<String, Integer> ids; // STR string -> its number
+    private int[] alphabet;               // character -> column in next, -1 if no STR uses it
+    private int[][] next;                 // next[state][column] is the state after reading that character
+    private int[][] matches;              // STRs ending at each state (including through suffix links)
+
+    /**
+     * Builds the automaton over the given STR strings. Duplicates are counted once and
+     * empty strings are ignored.
+     *
+     * @param strStrings the STR strings to count
+     */
+    public STRCounter(Collection<String> strStrings) {
+        ids = new LinkedHashMap<String, Integer>();
+        for (String str : strStrings) {
+            if (str != null && !str.isEmpty() && !ids.containsKey(str)) {
+                ids.put(str, ids.size());
+            }
+        }
+        strs = ids.keySet().toArray(new String[0]);
+
+        // Alphabet: every character used by an STR gets a column
+        int maxChar = 0;
+        for (String str : strs) {
+            for (int i = 0; i < str.length(); i++) {
+                maxChar = Math.max(maxChar, str.charAt(i));
+            }
+        }
+        alphabet = new int[maxChar + 1];
+        Arrays.fill(alphabet, -1);
+        int columns = 0;
+        for (String str : strs) {
+            for (int i = 0; i < str.length(); i++) {
+                if (alphabet[str.charAt(i)] == -1) {
+                    alphabet[str.charAt(i)] = columns++;
+                }
+            }
+        }
+
+        // Trie, -1 for a missing child
+        List<int[]> trie = new ArrayList<int[]>();
+        List<List<Integer>> ending = new ArrayList<List<Integer>>();
+        trie.add(newState(columns));
+        ending.add(new ArrayList<Integer>());
+        for (int id = 0; id < strs.length; id++) {
+            int state = 0;
+            for (int i = 0; i < strs[id].length(); i++) {
+                int column = alphabet[strs[id].charAt(i)];
+                if (trie.get(state)[column] == -1) {
+                    trie.get(state)[column] = trie.size();
+                    trie.add(newState(columns));
+                    ending.add(new ArrayList<Integer>());
+                }
+                state = trie.get(state)[column];
+            }
+            ending.get(state).add(id);
+        }
+
+        // Suffix links in breadth first order, turning missing children into transitions
+        next = trie.toArray(new int[0][]);
+        matches = new int[next.length][];
+        int[] link = new int[next.length];
+        int[] order = new int[next.length];
+        int head = 0;
+        int tail = 0;
+        for (int column = 0; column < columns; column++) {
+            if (next[0][column] == -1) {
+                next[0][column] = 0;
+            } else {
+                link[next[0][column]] = 0;
+                order[tail++] = next[0][column];
+            }
+        }
+        matches[0] = new int[0];
+        while (head < tail) {
+            int state = order[head++];
+            List<Integer> found = new ArrayList<Integer>(ending.get(state));
+            for (int id : matches[link[state]]) {
+                found.add(id);
+            }
+            matches[state] = new int[found.size()];
+            for (int i = 0; i < found.size(); i++) {
+                matches[state][i] = found.get(i);
+            }
+            for (int column = 0; column < columns; column++) {
+                int child = next[state][column];
+                if (child == -1) {
+                    next[state][column] = next[link[state]][column];
+                } else {
+                    link[child] = next[link[state]][column];
+                    order[tail++] = child;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the occurrences of every STR in a sequence in one pass.
+     *
+     * @param sequence the sequence to search
+     * @return array where index i holds the number of occurrences of STR number i (see getStr)
+     */
+    public int[] count(String sequence) {
+        int[] counts = new int[strs.length];
+        int[] nextStart = new int[strs.length]; // an occurrence counted must start here or later
+        int state = 0;
+        for (int i = 0; i < sequence.length(); i++) {
+            char c = sequence.charAt(i);
+            int column = c < alphabet.length ? alphabet[c] : -1;
+            if (column == -1) {
+                state = 0;
+                continue;
+            }
+            state = next[state][column];
+            for (int id : matches[state]) {
+                int start = i - strs[id].length() + 1;
+                if (start >= nextStart[id]) {
+                    counts[id]++;
+                    nextStart[id] = i + 1;
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the occurrences of every STR in a sequence in one pass.
+     *
+     * @param sequence the sequence to search
+     * @return map from STR string to its number of occurrences
+     */
+    public Map<String, Integer> countAll(String sequence) {
+        int[] counts = count(sequence);
+        Map<String, Integer> countsByStr = new HashMap<String, Integer>();
+        for (int id = 0; id < strs.length; id++) {
+            countsByStr.put(strs[id], counts[id]);
+        }
+        return countsByStr;
+    }
+
+    /**
+     * Gets the number of an STR string, its index in the array returned by count.
+     *
+     * @param str the STR string
+     * @return the number of the STR, -1 if the automaton was not built with it
+     */
+    public int getId(String str) {
+        Integer id = ids.get(str);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Gets STR number id.
+     *
+     * @param id the number of the STR
+     * @return the STR string
+     */
+    public String getStr(int id) {
+        return strs[id];
+    }
+
+    /**
+     * Gets the number of distinct STRs.
+     *
+     * @return the number of STRs the automaton counts
+     */
+    public int size() {
+        return strs.length;
+    }
+
+    private static int[] newState(int columns) {
+        int[] state = new int[columns];
+        Arrays.fill(state, -1);
+        return state;
+    }
+}
@@ -0,0 +1,152 @@
+package restaurant;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * This file keeps, for every menu category, which dishes can currently be prepared and in
+ * what quantity, so order() can find the substitute a customer settles on without checking
+ * every dish in between.
+ *
+ * The dishes of category c are numbered 0, 1, ... in menuVar[c] order. For each category a
+ * max segment tree holds the max servable quantity of the dish at each position: the root is
+ * tree[1], the children of tree[i] are tree[2i] and tree[2i + 1], and position p is the leaf
+ * tree[capacity + p]. nextAvailable() descends only into subtrees whose maximum is big enough,
+ * so the next dish (in ring order) that can be prepared is found in O(log n) whatever the
+ * quantity ordered, and update() changes one leaf and its ancestors.
+ *
+ * Like order(), the availability of the dish at a position is that of the dish its name
+ * resolves to (see the constructor), and RUHungry calls update() whenever the max servable
+ * quantity of a dish changes.
+ */
+
+public class AvailableDishIndex {
+
+    private static final int NONE = -1;
+
+    private Dish[][] dishes;     // dishes[c][p] is the dish at position p of category c
+    private int[][] trees;       // trees[c] is the max segment tree of category c
+    private int[] capacities;    // number of leaves of trees[c] (a power of two)
+    private IdentityHashMap<Dish, Integer> positions;  // dish -> its position in its category
+    private IdentityHashMap<Dish, List<int[]>> leaves; // dish checked -> {category, position} of every leaf it decides
+
+    /*
+     * Constructor
+     * @param menuVar the menu, one list of MenuNodes per category
+     * @param checkedDish maps the dish at a position to the dish whose stock decides whether it is available
+     */
+    public AvailableDishIndex(MenuNode[] menuVar, Function<Dish, Dish> checkedDish) {
+        dishes = new Dish[menuVar.length][];
+        trees = new int[menuVar.length][];
+        capacities = new int[menuVar.length];
+        positions = new IdentityHashMap<Dish, Integer>();
+        leaves = new IdentityHashMap<Dish, List<int[]>>();
+        for (int c = 0; c < menuVar.length; c++) {
+            List<Dish> category = new ArrayList<Dish>();
+            for (MenuNode ptr = menuVar[c]; ptr != null; ptr = ptr.getNextMenuNode()) {
+                category.add(ptr.getDish());
+            }
+            dishes[c] = category.toArray(new Dish[0]);
+            int capacity = 1;
+            while (capacity < dishes[c].length) {
+                capacity *= 2;
+            }
+            capacities[c] = capacity;
+            int[] tree = new int[2 * capacity];
+            Arrays.fill(tree, Integer.MIN_VALUE); // unused leaves never match
+            for (int p = 0; p < dishes[c].length; p++) {
+                positions.put(dishes[c][p], p);
+                Dish checked = checkedDish.apply(dishes[c][p]);
+                List<int[]> decided = leaves.get(checked);
+                if (decided == null) {
+                    decided = new ArrayList<int[]>(1);
+                    leaves.put(checked, decided);
+                }
+                decided.add(new int[] {c, p});
+                tree[capacity + p] = checked.getMaxServable();
+            }
+            for (int i = capacity - 1; i >= 1; i--) {
+                tree[i] = Math.max(tree[2 * i], tree[2 * i + 1]);
+            }
+            trees[c] = tree;
+        }
+    }
+
+    /**
+     * Refreshes every position whose availability is decided by the dish, after its
+     * max servable quantity changed.
+     *
+     * @param dish - the dish whose max servable quantity changed
+     */
+
+    public void update(Dish dish) {
+        List<int[]> decided = leaves.get(dish);
+        if (decided == null) {
+            return;
+        }
+        for (int[] leaf : decided) {
+            int[] tree = trees[leaf[0]];
+            synchronized (tree) {
+                int i = capacities[leaf[0]] + leaf[1];
+                tree[i] = dish.getMaxServable(); // read under the lock, so the last update wins
+                for (i /= 2; i >= 1; i /= 2) {
+                    tree[i] = Math.max(tree[2 * i], tree[2 * i + 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the first dish, starting at a position and wrapping around the category, of which
+     * the given quantity can be prepared.
+     *
+     * @param category - index of the category
+     * @param start - position to start at (checked first)
+     * @param quantity - quantity ordered
+     * @return the position of the dish, -1 if no dish in the category can be prepared
+     */
+
+    public int nextAvailable(int category, int start, int quantity) {
+        int[] tree = trees[category];
+        synchronized (tree) {
+            int position = firstAtLeast(tree, 1, 0, capacities[category] - 1, start, quantity);
+            if (position == NONE && start > 0) {
+                position = firstAtLeast(tree, 1, 0, capacities[category] - 1, 0, quantity);
+            }
+            return position;
+        }
+    }
+
+    public int size(int category) { return dishes[category].length; }
+    public Dish dishAt(int category, int position) { return dishes[category][position]; }
+
+    /*
+     * Position of the dish in its category, -1 if it is not on the menu the index was built from
+     */
+    public int position(Dish dish) {
+        Integer position = positions.get(dish);
+        return position == null ? NONE : position;
+    }
+
+    /*
+     * Leftmost leaf at or after from, under tree[node] (which covers positions lo..hi),
+     * holding at least quantity
+     */
+    private static int firstAtLeast(int[] tree, int node, int lo, int hi, int from, int quantity) {
+        if (hi < from || tree[node] < quantity) {
+            return NONE;
+        }
+        if (lo == hi) {
+            return lo;
+        }
+        int mid = (lo + hi) / 2;
+        int position = firstAtLeast(tree, 2 * node, lo, mid, from, quantity);
+        if (position != NONE) {
+            return position;
+        }
+        return firstAtLeast(tree, 2 * node + 1, mid + 1, hi, from, quantity);
+    }
+}
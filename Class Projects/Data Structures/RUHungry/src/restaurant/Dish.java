@@ -13,6 +13,7 @@ public class Dish {
     private int[] stockID;   // 1-D int array where each index is the ID of the ingredient needed for the dish
     private double price;    // price of the dish
     private double profit;   // profit made when selling a dish
+    private int maxServable; // how many of this dish the current stock can make (kept up to date by RUHungry)
 
     /*
      * Constructor
@@ -38,4 +39,7 @@ public class Dish {
 
     public double getProfit() { return profit; }
     public void setProfit(double profit) { this.profit = profit; }
+
+    public int getMaxServable() { return maxServable; }
+    public void setMaxServable(int maxServable) { this.maxServable = maxServable; }
 }
@@ -13,6 +13,7 @@ public class Ingredient{
     private String name;        // name of the ingredient
     private    int stockLevel;  // amount of stock
     private double cost;        // cost for the restaurant to purchase ingredient
+    private    int reorderThreshold; // restock when stockLevel drops below this (0 means never)
 
     /*
      * Constructor
@@ -48,4 +49,7 @@ public class Ingredient{
 
     public double getCost() { return cost; }
     public void setCost(double newPrice) { cost = newPrice; }
+
+    public int getReorderThreshold() { return reorderThreshold; }
+    public void setReorderThreshold ( int newThreshold ) { reorderThreshold = newThreshold; }
 }
\ No newline at end of file
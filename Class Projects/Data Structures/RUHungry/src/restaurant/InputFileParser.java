@@ -0,0 +1,229 @@
+package restaurant;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ * This file is a buffered, byte-level reader for the RUHungry input files
+ * (menu.in, stock.in, tables*.in, order*.in, ...).
+ *
+ * It reads the same tokens and lines StdIn does for those files, but every parser has its
+ * own buffer instead of the single static Scanner behind StdIn, so several restaurants can
+ * load their files at the same time, and it parses numbers straight from the bytes instead
+ * of going through Scanner's regular expressions.
+ *
+ * Tokens are separated by ASCII whitespace. Lines end with \n or \r\n and are decoded as UTF-8.
+ */
+
+public class InputFileParser implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private InputStream in;
+    private byte[] buffer;     // bytes read from in
+    private int position;      // next byte of buffer to read
+    private int limit;         // number of valid bytes in buffer, -1 once in is exhausted
+    private byte[] token;      // scratch space for the bytes of a token or line
+
+    /*
+     * Opens a file for parsing
+     * @param fileName the file to read
+     */
+    public InputFileParser(String fileName) throws IOException {
+        this(new FileInputStream(fileName));
+    }
+
+    /*
+     * Parses an already opened stream
+     * @param in the stream to read, closed by close()
+     */
+    public InputFileParser(InputStream in) {
+        this.in = in;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.position = 0;
+        this.limit = 0;
+        this.token = new byte[64];
+    }
+
+    /**
+     * Returns true if there are no more tokens (only whitespace is left).
+     * Skips the whitespace before the next token.
+     *
+     * @return true if the rest of the input is empty
+     */
+
+    public boolean isEmpty() throws IOException {
+        int c = peek();
+        while (c != -1 && isWhitespace(c)) {
+            position++;
+            c = peek();
+        }
+        return c == -1;
+    }
+
+    /**
+     * Reads the next token as an int.
+     *
+     * @return the int
+     */
+
+    public int readInt() throws IOException {
+        if (isEmpty()) {
+            throw new NoSuchElementException("attempts to read an 'int' value from the input stream, but no more tokens are available");
+        }
+        boolean negative = false;
+        int c = read();
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            c = read();
+        }
+        if (c < '0' || c > '9') {
+            throw new InputMismatchException("attempts to read an 'int' value from the input stream, but the next token is not an int");
+        }
+        long value = 0;
+        while (true) {
+            value = value * 10 + (c - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new InputMismatchException("int value out of range");
+            }
+            c = peek();
+            if (c < '0' || c > '9') {
+                break;
+            }
+            position++;
+        }
+        if (c != -1 && !isWhitespace(c)) {
+            throw new InputMismatchException("attempts to read an 'int' value from the input stream, but the next token is not an int");
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new InputMismatchException("int value out of range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads the next token as a double, with the same rounding as Double.parseDouble().
+     *
+     * @return the double
+     */
+
+    public double readDouble() throws IOException {
+        if (isEmpty()) {
+            throw new NoSuchElementException("attempts to read a 'double' value from the input stream, but no more tokens are available");
+        }
+        int length = 0;
+        int c = peek();
+        while (c != -1 && !isWhitespace(c)) {
+            length = append(length, c);
+            position++;
+            c = peek();
+        }
+        try {
+            return Double.parseDouble(new String(token, 0, length, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new InputMismatchException("attempts to read a 'double' value from the input stream, but the next token is not a double");
+        }
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return the token
+     */
+
+    public String readString() throws IOException {
+        if (isEmpty()) {
+            throw new NoSuchElementException("attempts to read a 'String' value from the input stream, but no more tokens are available");
+        }
+        int length = 0;
+        int c = peek();
+        while (c != -1 && !isWhitespace(c)) {
+            length = append(length, c);
+            position++;
+            c = peek();
+        }
+        return new String(token, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the rest of the current line, without the line terminator.
+     *
+     * @return the line, null if the input is exhausted
+     */
+
+    public String readLine() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        int length = 0;
+        while (c != -1 && c != '\n') {
+            length = append(length, c);
+            c = read();
+        }
+        if (length > 0 && token[length - 1] == '\r') {
+            length--;
+        }
+        return new String(token, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a single (ASCII) character, such as the space between an ID and a name.
+     *
+     * @return the character
+     */
+
+    public char readChar() throws IOException {
+        int c = read();
+        if (c == -1) {
+            throw new NoSuchElementException("attempts to read a 'char' value from the input stream, but no more tokens are available");
+        }
+        return (char) c;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c != -1) {
+            position++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (limit == -1) {
+            return -1;
+        }
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = -1;
+                return -1;
+            }
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    private int append(int length, int c) {
+        if (length == token.length) {
+            token = Arrays.copyOf(token, 2 * length);
+        }
+        token[length] = (byte) c;
+        return length + 1;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0x0B;
+    }
+}
@@ -0,0 +1,86 @@
+package restaurant;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Checks that TransactionJournal recovers from a crash that tore the last record:
+ * write and commit a record, append a torn record behind it (as a crash mid-write would),
+ * reopen the journal, append two more records, then replay it. All three committed
+ * records must come back, in order; the torn one must not. Then the same with a crash
+ * that tore the header of a new journal.
+ *
+ * Exits with an exception if the journal does not recover, prints "ok" otherwise.
+ *
+ * To run: java -cp bin restaurant.JournalRecoveryCheck
+ */
+
+public class JournalRecoveryCheck {
+
+    public static void main(String[] args) throws IOException {
+        File file = File.createTempFile("journal", ".bin");
+        file.deleteOnExit();
+        file.delete();
+
+        // Before the crash: one committed record
+        TransactionJournal journal = new TransactionJournal(file.getPath(), 1);
+        journal.append(new TransactionData("order", "Burger", 2, 10.5, true));
+        journal.close();
+        long committed = file.length();
+
+        // The crash: a record whose length was written but whose payload was cut short
+        DataOutputStream torn = new DataOutputStream(new FileOutputStream(file, true));
+        try {
+            torn.writeInt(40);
+            torn.write(new byte[] { 0, 0, 5 });
+        } finally {
+            torn.close();
+        }
+
+        // After the crash: reopen and keep appending
+        journal = new TransactionJournal(file.getPath(), 1);
+        check(file.length() == committed, "torn record was not truncated: length " + file.length() + ", expected " + committed);
+        journal.append(new TransactionData("donation", "Cheese", 3, 0, true));
+        journal.appendReset();
+        journal.append(new TransactionData("restock", "Lettuce", 5, -15.6, false));
+        journal.close();
+
+        // Replay
+        List<TransactionData> records = TransactionJournal.read(file.getPath());
+        check(records.size() == 4, "expected 4 records after recovery, read " + records.size());
+        check(records.get(0).getItem().equals("Burger") && records.get(0).getAmount() == 2, "first record changed");
+        check(records.get(1).getItem().equals("Cheese") && records.get(1).getType().equals("donation"), "second record lost");
+        check(records.get(2) == null, "reset marker lost");
+        check(records.get(3).getItem().equals("Lettuce") && !records.get(3).getSuccess(), "last record lost");
+
+        // A journal that did not crash is left as it is
+        long length = file.length();
+        new TransactionJournal(file.getPath(), 1).close();
+        check(file.length() == length, "intact journal was truncated");
+
+        // A crash before the header of a new journal was committed
+        FileOutputStream header = new FileOutputStream(file);
+        try {
+            header.write(new byte[] { 0x52, 0x55, 0x48, 0x4A });
+        } finally {
+            header.close();
+        }
+        check(TransactionJournal.read(file.getPath()).isEmpty(), "torn header read as records");
+        journal = new TransactionJournal(file.getPath(), 1);
+        journal.append(new TransactionData("order", "Nachos", 1, 4.2, true));
+        journal.close();
+        records = TransactionJournal.read(file.getPath());
+        check(records.size() == 1 && records.get(0).getItem().equals("Nachos"), "journal with a torn header not started over");
+
+        StdOut.println("ok");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package restaurant;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * This file is a small registry of named metrics, cheap enough to leave on all the time:
+ *      - counters: LongAdders, so threads incrementing the same counter do not contend
+ *      - histograms: counts of recorded values (e.g. latencies in nanoseconds) in power of two
+ *        buckets, bucket i holding values in [2^i, 2^(i+1)); recording is a few atomic adds
+ *      - gauges: functions evaluated only when the metrics are exported
+ *
+ * Metrics are created on first use by name, and callers keep the returned Counter or
+ * Histogram so the hot path never looks a name up. toText() and toJson() export every
+ * metric sorted by name; scheduleDump() writes one of them periodically.
+ */
+
+public class MetricsRegistry {
+
+    /**
+     * A count that only goes up.
+     */
+    public static class Counter {
+        private final LongAdder count = new LongAdder();
+
+        public void increment() { count.increment(); }
+        public void add(long amount) { count.add(amount); }
+        public long get() { return count.sum(); }
+    }
+
+    /**
+     * A distribution of non-negative values in power of two buckets.
+     */
+    public static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public void record(long value) {
+            buckets.incrementAndGet(value <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        public long getCount() { return count.sum(); }
+        public long getMax() { return max.get(); }
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        /*
+         * Upper bound of the bucket holding the given fraction of the values (0.5 for the median),
+         * never more than the largest value recorded
+         */
+        public long getPercentile(double fraction) {
+            long n = count.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(fraction * n);
+            long seen = 0;
+            for (int i = 0; i < 64; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(i == 63 ? Long.MAX_VALUE : (2L << i) - 1, max.get());
+                }
+            }
+            return max.get();
+        }
+    }
+
+    private final ConcurrentHashMap<String, Counter> counters;
+    private final ConcurrentHashMap<String, Histogram> histograms;
+    private final ConcurrentHashMap<String, DoubleSupplier> gauges;
+
+    /*
+     * Default constructor, the registry starts without metrics
+     */
+    public MetricsRegistry() {
+        counters = new ConcurrentHashMap<String, Counter>();
+        histograms = new ConcurrentHashMap<String, Histogram>();
+        gauges = new ConcurrentHashMap<String, DoubleSupplier>();
+    }
+
+    /**
+     * @param name - name of the counter
+     * @return the counter with that name, created if needed
+     */
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * @param name - name of the histogram
+     * @return the histogram with that name, created if needed
+     */
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Registers (or replaces) a gauge.
+     *
+     * @param name - name of the gauge
+     * @param value - computes the current value when the metrics are exported
+     */
+
+    public void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Exports every metric, one per line, e.g.
+     *      counter orders.succeeded 42
+     *      gauge stock.chain_length.max 3.0
+     *      histogram order.latency_ns count=42 mean=812.5 p50=1023 p99=4095 max=3900
+     *
+     * @return the metrics as text
+     */
+
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Counter> entry : new TreeMap<String, Counter>(counters).entrySet()) {
+            text.append("counter ").append(entry.getKey()).append(' ').append(entry.getValue().get()).append('\n');
+        }
+        for (Map.Entry<String, DoubleSupplier> entry : new TreeMap<String, DoubleSupplier>(gauges).entrySet()) {
+            text.append("gauge ").append(entry.getKey()).append(' ').append(entry.getValue().getAsDouble()).append('\n');
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(histograms).entrySet()) {
+            Histogram histogram = entry.getValue();
+            text.append("histogram ").append(entry.getKey())
+                .append(" count=").append(histogram.getCount())
+                .append(" mean=").append(histogram.getMean())
+                .append(" p50=").append(histogram.getPercentile(0.5))
+                .append(" p99=").append(histogram.getPercentile(0.99))
+                .append(" max=").append(histogram.getMax()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Exports every metric as one JSON object:
+     * {"counters":{name:value,...},"gauges":{name:value,...},
+     *  "histograms":{name:{"count":..,"mean":..,"p50":..,"p99":..,"max":..},...}}
+     * Gauges that are not a finite number are exported as null.
+     *
+     * @return the metrics as JSON
+     */
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"counters\":{");
+        String separator = "";
+        for (Map.Entry<String, Counter> entry : new TreeMap<String, Counter>(counters).entrySet()) {
+            json.append(separator).append(quote(entry.getKey())).append(':').append(entry.getValue().get());
+            separator = ",";
+        }
+        json.append("},\"gauges\":{");
+        separator = "";
+        for (Map.Entry<String, DoubleSupplier> entry : new TreeMap<String, DoubleSupplier>(gauges).entrySet()) {
+            double value = entry.getValue().getAsDouble();
+            json.append(separator).append(quote(entry.getKey())).append(':').append(Double.isFinite(value) ? Double.toString(value) : "null");
+            separator = ",";
+        }
+        json.append("},\"histograms\":{");
+        separator = "";
+        for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(histograms).entrySet()) {
+            Histogram histogram = entry.getValue();
+            json.append(separator).append(quote(entry.getKey()))
+                .append(":{\"count\":").append(histogram.getCount())
+                .append(",\"mean\":").append(histogram.getMean())
+                .append(",\"p50\":").append(histogram.getPercentile(0.5))
+                .append(",\"p99\":").append(histogram.getPercentile(0.99))
+                .append(",\"max\":").append(histogram.getMax()).append('}');
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Writes the metrics to out every period on a background (daemon) thread.
+     *
+     * @param out - where the metrics are written
+     * @param periodMillis - time between two dumps
+     * @param json - true for toJson(), false for toText()
+     * @return the executor running the dumps, shut it down to stop them
+     */
+
+    public ScheduledExecutorService scheduleDump(PrintWriter out, long periodMillis, boolean json) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> {
+            out.println(json ? toJson() : toText());
+            out.flush();
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        return executor;
+    }
+
+    private static String quote(String name) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
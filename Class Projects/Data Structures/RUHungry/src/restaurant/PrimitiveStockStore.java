@@ -0,0 +1,246 @@
+package restaurant;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * This file is an alternative to the stockVar hashtable that keeps the ingredients in
+ * parallel primitive arrays ("struct of arrays") instead of Ingredient objects behind
+ * StockNode chains.
+ *
+ * The ingredient in slot s has ID ids[s], name names[s], stock level stockLevels[s] and
+ * cost costs[s]. Two open addressing tables (linear probing, power-of-two capacity) map an
+ * ingredient ID, and a lower case ingredient name, to its slot. A lookup by ID reads a couple
+ * of neighbouring ints instead of following pointers from a bucket to a StockNode to an
+ * Ingredient, and every ingredient costs a few array entries instead of two objects.
+ *
+ * find(), findSlot() and updateStock() behave like RUHungry.findStockNode(int),
+ * findStockNode(String) and updateStock(): adding an ingredient with an ID that is already
+ * present makes the new ingredient the one that is found. When two ingredients share a name,
+ * findSlot() finds the first one added; RUHungry finds the one its bucket scan reaches first,
+ * which may be the other one.
+ *
+ * This is a prototype for measuring the layout (see StockStoreBenchmark), not a second copy
+ * of RUHungry's stock: RUHungry keeps using stockVar, whose StockNodes its methods return,
+ * and nothing keeps a PrimitiveStockStore in sync with it.
+ */
+
+public class PrimitiveStockStore {
+
+    private static final int EMPTY = -1; // marks a free entry in idTable / nameTable
+
+    // Ingredients, one slot each
+    private int[] ids;
+    private String[] names;
+    private int[] stockLevels;
+    private double[] costs;
+    private int size;            // number of slots in use
+
+    // Open addressing indexes: slot of the ingredient, or EMPTY
+    private int[] idTable;
+    private int[] nameTable;
+    private int mask;            // table capacity - 1
+
+    /*
+     * Constructor
+     * @param expectedIngredients number of ingredients to size the arrays for
+     */
+    public PrimitiveStockStore(int expectedIngredients) {
+        int slots = Math.max(16, expectedIngredients);
+        ids = new int[slots];
+        names = new String[slots];
+        stockLevels = new int[slots];
+        costs = new double[slots];
+        size = 0;
+        int capacity = Integer.highestOneBit(Math.max(16, slots) * 2 - 1) * 2; // at least twice the slots
+        allocateTables(capacity);
+    }
+
+    /**
+     * Loads a stock file (stock.in format) into a new store.
+     *
+     * @param inputFile - the input file with the ingredients
+     * @return the store
+     */
+
+    public static PrimitiveStockStore load(String inputFile) {
+        try {
+            InputFileParser in = new InputFileParser(inputFile);
+            try {
+                PrimitiveStockStore store = new PrimitiveStockStore(in.readInt());
+                while (!in.isEmpty()) {
+                    int ingredientID = in.readInt();
+                    in.readChar();
+                    String ingredientName = in.readLine();
+                    double ingredientCost = in.readDouble();
+                    int stockAmount = in.readInt();
+                    store.addIngredient(ingredientID, ingredientName, stockAmount, ingredientCost);
+                }
+                return store;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Adds an ingredient, replacing the one with the same ID if there is one.
+     *
+     * @param ID - ingredient ID number
+     * @param name - name of the ingredient
+     * @param stockLevel - amount of stock
+     * @param cost - cost for the restaurant to purchase the ingredient
+     */
+
+    public void addIngredient(int ID, String name, int stockLevel, double cost) {
+        int slot = find(ID);
+        if (slot == EMPTY) {
+            if (size == ids.length) {
+                int slots = 2 * size;
+                ids = Arrays.copyOf(ids, slots);
+                names = Arrays.copyOf(names, slots);
+                stockLevels = Arrays.copyOf(stockLevels, slots);
+                costs = Arrays.copyOf(costs, slots);
+            }
+            slot = size++;
+            ids[slot] = ID;
+            insert(idTable, hash(ID), slot);
+        }
+        names[slot] = name;
+        stockLevels[slot] = stockLevel;
+        costs[slot] = cost;
+        insert(nameTable, hash(normalize(name)), slot); // kept out if an older ingredient has the same name
+        if (2 * size > idTable.length) {
+            allocateTables(2 * idTable.length);
+            for (int s = 0; s < size; s++) {
+                insert(idTable, hash(ids[s]), s);
+            }
+            for (int s = 0; s < size; s++) {
+                insert(nameTable, hash(normalize(names[s])), s);
+            }
+        }
+    }
+
+    /**
+     * Finds the slot of an ingredient by ID, like RUHungry.findStockNode(int).
+     *
+     * @param ingredientID - the ID of the ingredient
+     * @return the slot, -1 if there is no such ingredient
+     */
+
+    public int find(int ingredientID) {
+        for (int i = hash(ingredientID) & mask; ; i = (i + 1) & mask) {
+            int slot = idTable[i];
+            if (slot == EMPTY || ids[slot] == ingredientID) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Finds the slot of an ingredient by name, ignoring case, like RUHungry.findStockNode(String).
+     *
+     * @param ingredientName - the name of the ingredient
+     * @return the slot, -1 if there is no such ingredient
+     */
+
+    public int findSlot(String ingredientName) {
+        if (ingredientName == null) {
+            return EMPTY;
+        }
+        for (int i = hash(normalize(ingredientName)) & mask; ; i = (i + 1) & mask) {
+            int slot = nameTable[i];
+            if (slot == EMPTY || names[slot].equalsIgnoreCase(ingredientName)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Adds quantity to the stock level of an ingredient, like RUHungry.updateStock():
+     * the ingredient is found by stockID unless it is -1, by ingredientName otherwise.
+     *
+     * @param ingredientName - the name of the ingredient
+     * @param stockID - the id of the ingredient
+     * @param quantity - the amount to add to the current stock amount (negative to remove stock)
+     */
+
+    public void updateStock(String ingredientName, int stockID, int quantity) {
+        int slot = EMPTY;
+        if (stockID != -1) {
+            slot = find(stockID);
+        } else if (ingredientName != null) {
+            slot = findSlot(ingredientName);
+        }
+        if (slot != EMPTY) {
+            stockLevels[slot] += quantity;
+        }
+    }
+
+    // Getter and Setter methods, by slot
+    public int size() { return size; }
+    public int getID(int slot) { return ids[slot]; }
+    public String getName(int slot) { return names[slot]; }
+    public int getStockLevel(int slot) { return stockLevels[slot]; }
+    public void setStockLevel(int slot, int stockLevel) { stockLevels[slot] = stockLevel; }
+    public double getCost(int slot) { return costs[slot]; }
+    public void setCost(int slot, double cost) { costs[slot] = cost; }
+
+    private void allocateTables(int capacity) {
+        idTable = new int[capacity];
+        nameTable = new int[capacity];
+        Arrays.fill(idTable, EMPTY);
+        Arrays.fill(nameTable, EMPTY);
+        mask = capacity - 1;
+    }
+
+    /*
+     * Puts slot at the first free entry of the probe sequence, unless an entry already
+     * holds the same key (the first slot inserted with a key keeps it)
+     */
+    private void insert(int[] table, int hash, int slot) {
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int current = table[i];
+            if (current == EMPTY) {
+                table[i] = slot;
+                return;
+            }
+            if (sameKey(table, current, slot)) {
+                return;
+            }
+        }
+    }
+
+    private boolean sameKey(int[] table, int current, int slot) {
+        if (table == idTable) {
+            return ids[current] == ids[slot];
+        }
+        return names[current].equalsIgnoreCase(names[slot]);
+    }
+
+    /*
+     * Spreads the bits of the key so consecutive IDs do not land in one run of the table
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(String key) {
+        return hash(key.hashCode());
+    }
+
+    /*
+     * Folds every character the way equalsIgnoreCase() compares it, independent of the default locale
+     */
+    private static String normalize(String name) {
+        char[] folded = new char[name.length()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+        }
+        return new String(folded);
+    }
+}
@@ -1,5 +1,19 @@
 package restaurant;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * RUHungry is a fictitious restaurant. 
  * You will be running RUHungry for a day by seating guests, 
@@ -21,13 +35,47 @@ public class RUHungry {
     // Menu: two parallel arrays. The index in one corresponds to the same index in the other.
     private   String[] categoryVar; // array where containing the name of menu categories (e.g. Appetizer, Dessert).
     private MenuNode[] menuVar;     // array of lists of MenuNodes where each index is a category.
+
+    // Menu lookup indexes, keyed by lower case name and rebuilt by menu().
+    // Like every name index here, a name maps to the node the given linear scan would find first.
+    private HashMap<String, MenuNode> dishIndex;     // dish name -> first MenuNode holding that dish
+    private HashMap<String, Integer>  categoryIndex; // category name -> index in categoryVar/menuVar
     
     // Stock: hashtable using chaining to resolve collisions.
     private StockNode[] stockVar;  // array of linked lists of StockNodes (use hashfunction to organize Nodes: id % stockVarSize)
     private int stockVarSize;
+    private int stockCount;          // number of StockNodes currently in stockVar
+    private double stockLoadFactor;  // stockVar grows once stockCount / stockVarSize exceeds this
+    private HashMap<String, StockNode> stockNameIndex; // lower case ingredient name -> StockNode the scan of findStockNode(String) finds first
+
+    // Availability: ingredient ID -> dishes using it, built once both the menu and the stock are loaded.
+    // Each Dish keeps its max servable quantity (lowest stock level among its ingredients) up to date.
+    private HashMap<Integer, List<Dish>> dishesByIngredient;
+    private AvailableDishIndex availableDishes; // per category: which dishes can be prepared, for order() substitutions
+
+    // Low stock: ingredients with a reorder threshold, ordered by stock level minus threshold
+    // (most depleted first). Guarded by its own lock since orderConcurrently() changes stock.
+    private final TreeSet<Ingredient> reorderIndex;
 
     // Transactions: orders, donations, restock transactions are recorded 
     private TransactionNode transactionVar; // refers to the first front node in linked list
+    private TransactionNode transactionTail; // refers to the last node in linked list
+    private final TransactionAnalytics analytics; // running totals of the transactions in the list
+    private TransactionJournal journal;     // on-disk copy of the transactions, null if not journaling
+    private boolean restoringTransactions;  // true while replayJournal()/restoreSnapshot() add transactions
+
+    // Striped locks for orderConcurrently(): ingredient ID i is guarded by stockLocks[i % STOCK_LOCK_STRIPES]
+    private final ReentrantLock[] stockLocks;
+
+    // Metrics, with the hot path ones kept in fields so they are never looked up by name
+    private final MetricsRegistry metrics;
+    private final MetricsRegistry.Counter ordersSucceeded;
+    private final MetricsRegistry.Counter ordersFailed;
+    private long stockLookups; // plain field: an atomic add would cost more than the lookup itself
+    private final MetricsRegistry.Histogram orderLatency;
+
+    // Where printRestaurant() and the other reports are written, null to use StdOut
+    private PrintWriter output;
 
     // Queue keeps track of parties that left the restaurant
     private Queue<Party> leftQueueVar;  
@@ -37,15 +85,46 @@ public class RUHungry {
     private Party[] tables;      // Parties currently occupying the tables
     private   int[] tableSeats;  // The number of seats at each table
 
+    // Load factor used for stockVar unless setStockLoadFactor() is called: never rehash, so stockVar
+    // keeps the size read from stock.in and printRestaurant() prints the layout the assignment expects
+    public static final double DEFAULT_STOCK_LOAD_FACTOR = Double.POSITIVE_INFINITY;
+
+    // Number of locks the ingredients are spread over by orderConcurrently() (at most 64: an order keeps its stripes in a long)
+    public static final int STOCK_LOCK_STRIPES = 64;
+
     /*
      * Default constructor
      */
     public RUHungry () {
         categoryVar    = null;
         menuVar        = null;
+        dishIndex      = null;
+        categoryIndex  = null;
         stockVar       = null;
         stockVarSize   = 0;
+        stockCount     = 0;
+        stockLoadFactor = DEFAULT_STOCK_LOAD_FACTOR;
+        stockNameIndex = null;
+        dishesByIngredient = null;
+        availableDishes = null;
         transactionVar = null;
+        transactionTail = null;
+        analytics      = new TransactionAnalytics();
+        journal        = null;
+        restoringTransactions = false;
+        reorderIndex   = new TreeSet<Ingredient>(Comparator.comparingInt((Ingredient ingredient) -> ingredient.getStockLevel() - ingredient.getReorderThreshold())
+                                                  .thenComparingInt(Ingredient::getID));
+        stockLocks     = new ReentrantLock[STOCK_LOCK_STRIPES];
+        for (int i = 0; i < STOCK_LOCK_STRIPES; i++) {
+            stockLocks[i] = new ReentrantLock();
+        }
+        metrics         = new MetricsRegistry();
+        ordersSucceeded = metrics.counter("orders.succeeded");
+        ordersFailed    = metrics.counter("orders.failed");
+        stockLookups    = 0;
+        orderLatency    = metrics.histogram("order.latency_ns");
+        registerGauges();
+        output         = null;
         leftQueueVar   = null;
         tableSeats     = null;
         tables         = null;
@@ -57,11 +136,81 @@ public class RUHungry {
     public MenuNode[] getMenu() { return menuVar; }
     public String[] getCategoryArray() { return categoryVar;}
     public StockNode[] getStockVar() { return stockVar; } 
+    public boolean isNameIndexed(StockNode node) { // whether findStockNode(String) returns this node for its name
+        return stockNameIndex != null && stockNameIndex.get(normalize(node.getIngredient().getName())) == node;
+    }
     public TransactionNode getFrontTransactionNode() { return transactionVar; } 
-    public TransactionNode resetFrontNode() {return transactionVar = null;} // method to reset the transactions for a new day
+    public synchronized TransactionNode resetFrontNode() { // method to reset the transactions for a new day
+        transactionTail = null;
+        analytics.reset();
+        if (journal != null) {
+            try {
+                journal.appendReset();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return transactionVar = null;
+    }
+    public synchronized int getTransactionSuccesses() { return analytics.overallSuccesses(); }
+    public synchronized int getTransactionFailures() { return analytics.overallFailures(); }
+    public TransactionAnalytics getAnalytics() { return analytics; }
     public Queue<Party> getLeftQueueVar() { return leftQueueVar; } 
     public Party[] getTables() { return tables; }
     public int[] getTableSeats() { return tableSeats; }
+    public void setOutput(PrintWriter output) { this.output = output; } // null to print through StdOut again
+    public MetricsRegistry getMetrics() { return metrics; }
+
+    /*
+     * Gauges are computed when the metrics are exported, not when the restaurant changes
+     */
+    private void registerGauges() {
+        metrics.gauge("stock.lookups", () -> stockLookups); // approximate while orderConcurrently() runs on several threads
+        metrics.gauge("stock.ingredients", () -> stockCount);
+        metrics.gauge("stock.buckets", () -> stockVarSize);
+        metrics.gauge("stock.chain_length.max", () -> {
+            int max = 0;
+            StockNode[] buckets = stockVar;
+            if (buckets != null) {
+                for (StockNode head : buckets) {
+                    int length = 0;
+                    for (StockNode ptr = head; ptr != null; ptr = ptr.getNextStockNode()) {
+                        length++;
+                    }
+                    max = Math.max(max, length);
+                }
+            }
+            return max;
+        });
+        metrics.gauge("stock.chain_length.mean", () -> { // over the buckets that are not empty
+            int used = 0;
+            StockNode[] buckets = stockVar;
+            if (buckets != null) {
+                for (StockNode head : buckets) {
+                    if (head != null) {
+                        used++;
+                    }
+                }
+            }
+            return used == 0 ? 0 : (double) stockCount / used;
+        });
+        metrics.gauge("transactions.ledger_length", () -> analytics.overallCount());
+        metrics.gauge("tables.occupied", () -> occupiedTables());
+        metrics.gauge("tables.occupancy", () -> tables == null || tables.length == 0 ? 0 : (double) occupiedTables() / tables.length);
+    }
+
+    private int occupiedTables() {
+        int occupied = 0;
+        Party[] current = tables;
+        if (current != null) {
+            for (Party party : current) {
+                if (party != null) {
+                    occupied++;
+                }
+            }
+        }
+        return occupied;
+    }
 
     /*
      * Menu methods
@@ -88,44 +237,113 @@ public class RUHungry {
      *          i) make a dish object (with filled parameters -- don't worry about "price" and "profit" in the dish object for right now)
      *          ii) create menuNode and insert at the front of menuVar (NOTE! there will be multiple menuNodes in one index)
      * 
+     * The file is read with its own InputFileParser, so several restaurants can load at once.
+     * 
      * @param inputFile - use menu.in file which contains all the dishes
      */
 
      public void menu(String inputFile) {
-            StdIn.setFile(inputFile);
-            int numCategories = Integer.parseInt(StdIn.readLine());
+            parse(inputFile, this::menu);
+        }
+
+     private void menu(InputFileParser in) throws IOException {
+            int numCategories = Integer.parseInt(in.readLine().trim());
             categoryVar = new String[numCategories];
             menuVar = new MenuNode[numCategories];
             for (int i = 0; i < numCategories; i++) {
-                String categoryName = StdIn.readLine();
+                String categoryName = in.readLine();
                 categoryVar[i] = categoryName;
-                int numDishes = Integer.parseInt(StdIn.readLine());
+                int numDishes = Integer.parseInt(in.readLine().trim());
                 for (int j = 0; j < numDishes; j++) {
-                    String dishName = StdIn.readLine();
-                    int numIngredients = StdIn.readInt();
+                    String dishName = in.readLine();
+                    int numIngredients = in.readInt();
                     int[] ingredientIDs = new int[numIngredients];
                     for (int k = 0; k < numIngredients; k++) {
-                        ingredientIDs[k] = StdIn.readInt();
+                        ingredientIDs[k] = in.readInt();
                     }
-                    StdIn.readLine(); // To consume the newline character after reading the last ingredient ID
+                    in.readLine(); // To consume the newline character after reading the last ingredient ID
                     Dish dish = new Dish(categoryName, dishName, ingredientIDs);
                     MenuNode node = new MenuNode(dish, menuVar[i]);
                     menuVar[i] = node;
                 }
             }
-        }    
+            buildMenuIndex();
+            buildAvailabilityIndex();
+        }
+
+    /*
+     * Reads one of the input files with its own InputFileParser
+     */
+    private interface FileLoader {
+        void load(InputFileParser in) throws IOException;
+    }
+
+    private static void parse(String inputFile, FileLoader loader) {
+        try {
+            InputFileParser in = new InputFileParser(inputFile);
+            try {
+                loader.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Builds the dish name and category name indexes over menuVar and categoryVar.
+     * 
+     * Categories and dishes are visited in the same order findDish() and findCategoryIndex()
+     * used to scan them, and only the first occurrence of a name is kept, so a lookup
+     * through the index returns the same node or index the linear scan would.
+     */
+
+    private void buildMenuIndex() {
+        dishIndex = new HashMap<String, MenuNode>();
+        categoryIndex = new HashMap<String, Integer>();
+        for (int i = 0; i < categoryVar.length; i++) {
+            categoryIndex.putIfAbsent(normalize(categoryVar[i]), i);
+            for (MenuNode ptr = menuVar[i]; ptr != null; ptr = ptr.getNextMenuNode()) {
+                dishIndex.putIfAbsent(normalize(ptr.getDish().getName()), ptr);
+            }
+        }
+    }
+
+    /*
+     * Key used by the name indexes so lookups stay case insensitive (null stays null and never matches).
+     * Every character is folded the way equalsIgnoreCase() compares it (upper then lower case), not
+     * with toLowerCase(), which depends on the default locale (e.g. "RICE" is "rıce" in Turkish)
+     */
+    private static String normalize(String name) {
+        if (name == null) {
+            return null;
+        }
+        char[] folded = new char[name.length()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+        }
+        return new String(folded);
+    }
+
         /** 
      * Find and return the MenuNode that contains the dish with dishName in the menuVar.
      * 
      *      ** GIVEN METHOD **
      *      ** DO NOT EDIT **
      * 
+     * Uses the dish name index built by menu() when it is available.
+     * 
      * @param dishName - the name of the dish
      * @return the dish object corresponding to searched dish, null if dishName is not found.
      */
 
     public MenuNode findDish ( String dishName ) {
 
+        if ( dishIndex != null ) {
+            return dishIndex.get(normalize(dishName));
+        }
+
         MenuNode menuNode = null;
 
         // Search all categories since we don't know which category dishName is at
@@ -150,11 +368,17 @@ public class RUHungry {
      *      ** GIVEN METHOD **
      *      ** DO NOT EDIT **
      *
+     * Uses the category name index built by menu() when it is available.
+     *
      * @param category - the category name
      * @return index of category in categoryVar
      */
 
     public int findCategoryIndex ( String category ) {
+        if ( categoryIndex != null ) {
+            Integer index = categoryIndex.get(normalize(category));
+            return index == null ? 0 : index;
+        }
         int index = 0;
         for ( int i = 0; i < categoryVar.length; i++ ){
             if ( category.equalsIgnoreCase(categoryVar[i]) ) {
@@ -184,6 +408,12 @@ public class RUHungry {
      * 
      * 2. insert at the front of the linked list at the specific index
      * 
+     * 3. record the node in the ingredient name index so findStockNode(String) stays in sync:
+     *    the scan it replaces goes through the buckets in order and each chain from its front,
+     *    so newNode takes over a name unless the ingredient indexed under it is in an earlier bucket
+     * 
+     * 4. if the table is now fuller than the stock load factor allows, rehash it into a bigger array
+     * 
      * @param newNode - StockNode that needs to be inserted into StockVar
      */
 
@@ -200,6 +430,124 @@ public class RUHungry {
             newNode.setNextStockNode(stockVar[index]);
             stockVar[index] = newNode;
         }
+        if (stockNameIndex == null) {
+            stockNameIndex = new HashMap<String, StockNode>();
+        }
+        String key = normalize(newNode.getIngredient().getName());
+        StockNode indexed = stockNameIndex.get(key);
+        if (indexed == null || index <= indexed.getIngredient().getID() % stockVarSize) {
+            stockNameIndex.put(key, newNode);
+        }
+        stockCount++;
+        if (stockCount > stockLoadFactor * stockVarSize) {
+            resizeStockHashTable(2 * stockVarSize + 1);
+        }
+        if (dishesByIngredient != null) {
+            List<Dish> dishes = dishesByIngredient.get(id);
+            if (dishes != null) {
+                for (Dish dish : dishes) {
+                    refreshMaxServable(dish);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves every StockNode into a new stockVar array of the given size.
+     * 
+     * The nodes themselves are relinked rather than copied, so references held by
+     * callers stay valid. Relinking changes which node of a duplicate name the scan of
+     * findStockNode(String) reaches first, so the ingredient name index is rebuilt.
+     * 
+     * @param newSize - the number of buckets in the new stockVar
+     */
+
+    private void resizeStockHashTable(int newSize) {
+        StockNode[] oldStockVar = stockVar;
+        stockVar = new StockNode[newSize];
+        stockVarSize = newSize;
+        for (StockNode head : oldStockVar) {
+            StockNode ptr = head;
+            while (ptr != null) {
+                StockNode next = ptr.getNextStockNode();
+                int index = ptr.getIngredient().getID() % stockVarSize;
+                ptr.setNextStockNode(stockVar[index]);
+                stockVar[index] = ptr;
+                ptr = next;
+            }
+        }
+        stockNameIndex = new HashMap<String, StockNode>();
+        for (StockNode head : stockVar) {
+            for (StockNode ptr = head; ptr != null; ptr = ptr.getNextStockNode()) {
+                stockNameIndex.putIfAbsent(normalize(ptr.getIngredient().getName()), ptr);
+            }
+        }
+    }
+
+    /**
+     * Sets the load factor (ingredients per bucket) stockVar may reach before it is rehashed
+     * into a bigger array. The default, Double.POSITIVE_INFINITY, keeps the size read from stock.in;
+     * 0.75 is a good value when the table should grow with the number of ingredients.
+     * 
+     * @param loadFactor - the maximum number of ingredients per bucket, must be positive
+     */
+
+    public void setStockLoadFactor(double loadFactor) {
+        if (!(loadFactor > 0)) {
+            throw new IllegalArgumentException("Load factor must be positive: " + loadFactor);
+        }
+        stockLoadFactor = loadFactor;
+        if (stockVar != null && stockCount > stockLoadFactor * stockVarSize) {
+            int newSize = stockVarSize;
+            while (stockCount > stockLoadFactor * newSize) {
+                newSize = 2 * newSize + 1;
+            }
+            resizeStockHashTable(newSize);
+        }
+    }
+
+    public double getStockLoadFactor() { return stockLoadFactor; }
+
+    /**
+     * Returns the length of the chain at every index of stockVar.
+     * 
+     * @return array where index i holds the number of StockNodes in stockVar[i]
+     */
+
+    public int[] stockChainLengths() {
+        int[] lengths = new int[stockVar.length];
+        for (int i = 0; i < stockVar.length; i++) {
+            for (StockNode ptr = stockVar[i]; ptr != null; ptr = ptr.getNextStockNode()) {
+                lengths[i]++;
+            }
+        }
+        return lengths;
+    }
+
+    /**
+     * Prints the size, load and chain length statistics of stockVar.
+     */
+
+    public void printStockStatistics() {
+        if (stockVar == null) {
+            println("Empty - stockVar is null.");
+            return;
+        }
+        int[] lengths = stockChainLengths();
+        int longest = 0;
+        int emptyBuckets = 0;
+        for (int length : lengths) {
+            longest = Math.max(longest, length);
+            if (length == 0) {
+                emptyBuckets++;
+            }
+        }
+        int usedBuckets = lengths.length - emptyBuckets;
+        println("Stock buckets: " + stockVarSize + ", Ingredients: " + stockCount
+            + ", Load factor: " + ((Math.round((double) stockCount / stockVarSize * 100.0)) / 100.0)
+            + " (max " + stockLoadFactor + ")");
+        println("Empty buckets: " + emptyBuckets + ", Longest chain: " + longest
+            + ", Average non-empty chain: " + (usedBuckets == 0 ? 0 : ((Math.round((double) stockCount / usedBuckets * 100.0)) / 100.0)));
     }
 
     /**
@@ -214,6 +562,7 @@ public class RUHungry {
      */
    
     public StockNode findStockNode (int ingredientID) {
+        stockLookups++;
         int index = ingredientID % stockVarSize;
         StockNode ptr = stockVar[index];
         while (ptr != null) {
@@ -231,11 +580,19 @@ public class RUHungry {
      *      ** GIVEN METHOD **
      *      ** DO NOT EDIT **
      * 
+     * Uses the ingredient name index kept by addStockNode() when it is available. When several
+     * ingredients share a name, the index returns the one the scan below would find first.
+     * 
      * @param ingredientName - the name of the ingredient
      * @return the specific ingredient StockNode, null otherwise
      */
 
     public StockNode findStockNode (String ingredientName) {
+        stockLookups++;
+
+        if ( stockNameIndex != null ) {
+            return stockNameIndex.get(normalize(ingredientName));
+        }
         
         StockNode stockNode = null;
         
@@ -278,7 +635,49 @@ public class RUHungry {
             stockNode = findStockNode(ingredientName);
         }
         if (stockNode != null) {
-            stockNode.getIngredient().updateStockLevel(quantity);
+            adjustStock(stockNode.getIngredient(), quantity);
+        }
+    }
+
+    /*
+     * Single place where stock levels change, so derived state can be kept in step with it:
+     * the max servable quantity of every dish using the ingredient (and its place in
+     * availableDishes) is updated here, and the
+     * ingredient is moved to its new place in the reorder index.
+     */
+    private void adjustStock(Ingredient ingredient, int quantity) {
+        if (ingredient.getReorderThreshold() > 0) {
+            synchronized (reorderIndex) {
+                boolean indexed = reorderIndex.remove(ingredient);
+                ingredient.updateStockLevel(quantity);
+                if (indexed) {
+                    reorderIndex.add(ingredient);
+                }
+            }
+        } else {
+            ingredient.updateStockLevel(quantity);
+        }
+        if (dishesByIngredient == null) {
+            return;
+        }
+        List<Dish> dishes = dishesByIngredient.get(ingredient.getID());
+        if (dishes == null) {
+            return;
+        }
+        int stockLevel = ingredient.getStockLevel();
+        for (Dish dish : dishes) {
+            if (quantity < 0) {
+                // stock went down: the dish can only be limited further by this ingredient
+                synchronized (dish) {
+                    dish.setMaxServable(Math.min(dish.getMaxServable(), stockLevel));
+                }
+                if (availableDishes != null) {
+                    availableDishes.update(dish);
+                }
+            } else if (quantity > 0) {
+                // stock went up: another ingredient may now be the limiting one
+                refreshMaxServable(dish);
+            }
         }
     }
 
@@ -304,19 +703,52 @@ public class RUHungry {
      public void updatePriceAndProfit() {
             for (MenuNode menuNode : menuVar) {
             while (menuNode != null) {
-                Dish dish = menuNode.getDish();
-                double cost = 0;
-                for (int ingredientID : dish.getStockID()) {
-                    StockNode stockNode = findStockNode(ingredientID);
-                    cost += stockNode.getIngredient().getCost();
-                }
-                double price = cost * 1.2;
-                dish.setPriceOfDish(price);
-                dish.setProfit(price - cost);
+                updatePriceAndProfit(menuNode.getDish());
                 menuNode = menuNode.getNextMenuNode();
             }
         }
     }
+
+    /*
+     * Updates the price and profit of a single dish from the current costs of its ingredients
+     */
+    private void updatePriceAndProfit(Dish dish) {
+        double cost = 0;
+        for (int ingredientID : dish.getStockID()) {
+            StockNode stockNode = findStockNode(ingredientID);
+            cost += stockNode.getIngredient().getCost();
+        }
+        double price = cost * 1.2;
+        dish.setPriceOfDish(price);
+        dish.setProfit(price - cost);
+    }
+
+    /**
+     * This method changes what the restaurant pays for an ingredient and reprices only the
+     * dishes that use it (found through the ingredient ID -> dishes index), instead of the
+     * whole menu like updatePriceAndProfit().
+     * 
+     * @param ingredientID - the id of the ingredient
+     * @param newCost - the new cost of the ingredient
+     * @return false if the ingredient is not in stockVar, true otherwise
+     */
+
+    public boolean updateIngredientCost(int ingredientID, double newCost) {
+        StockNode stockNode = findStockNode(ingredientID);
+        if (stockNode == null) {
+            return false;
+        }
+        stockNode.getIngredient().setCost(newCost);
+        if (dishesByIngredient != null) {
+            List<Dish> dishes = dishesByIngredient.get(ingredientID);
+            if (dishes != null) {
+                for (Dish dish : dishes) {
+                    updatePriceAndProfit(dish);
+                }
+            }
+        }
+        return true;
+    }
     
 
     /**
@@ -330,9 +762,10 @@ public class RUHungry {
      * 
      * 1. set and read the inputFile (stock.in):
      *      a) first integer (on line 1) is the size of StockVar *** update stockVarSize AND create the stockVar array ***
+     *         (stockVar still grows later if the ingredients exceed the stock load factor)
      *      b) first integer of next line represents the ingredientID
      *          i) example: 101 on line 2
-     *      c) use StdIn.readChar() to get rid of the space between the id and the name
+     *      c) use readChar() to get rid of the space between the id and the name
      *      d) the string that follows is the ingredient name (NOTE! --> there are spaces between certain strings)
      *          i) example: Lettuce
      *      e) the double on the next line corresponds to the ingredient's cost
@@ -347,21 +780,108 @@ public class RUHungry {
      */
 
      public void createStockHashTable (String inputFile){
-        
-        StdIn.setFile(inputFile); // opens inputFile to be read by StdIn
-        stockVarSize = StdIn.readInt();
+        parse(inputFile, this::createStockHashTable);
+    }
+
+     private void createStockHashTable (InputFileParser in) throws IOException {
+        stockVarSize = in.readInt();
         stockVar = new StockNode[stockVarSize];
-        while (!StdIn.isEmpty())
+        stockCount = 0;
+        stockNameIndex = new HashMap<String, StockNode>();
+        dishesByIngredient = null;
+        availableDishes = null;
+        synchronized (reorderIndex) {
+            reorderIndex.clear();
+        }
+        while (!in.isEmpty())
         {
-            int ingredientID = StdIn.readInt(); 
-            StdIn.readChar();
-            String ingredientName = StdIn.readLine();
-            double ingredientCost = StdIn.readDouble();
-            int stockAmount = StdIn.readInt(); 
+            int ingredientID = in.readInt(); 
+            in.readChar();
+            String ingredientName = in.readLine();
+            double ingredientCost = in.readDouble();
+            int stockAmount = in.readInt(); 
             Ingredient ingredient = new Ingredient(ingredientID, ingredientName, stockAmount, ingredientCost); 
             StockNode stockNode = new StockNode(ingredient, null); 
             addStockNode(stockNode);
         }
+        buildAvailabilityIndex();
+    }
+
+    /**
+     * Builds the ingredient ID -> dishes index, sets the max servable quantity of every dish
+     * and builds the per category index of available dishes.
+     * Does nothing until both menuVar and stockVar have been loaded.
+     */
+
+    private void buildAvailabilityIndex() {
+        if (menuVar == null || stockVar == null) {
+            return;
+        }
+        availableDishes = null;
+        dishesByIngredient = new HashMap<Integer, List<Dish>>();
+        for (MenuNode head : menuVar) {
+            for (MenuNode ptr = head; ptr != null; ptr = ptr.getNextMenuNode()) {
+                Dish dish = ptr.getDish();
+                for (int stockID : dish.getStockID()) {
+                    List<Dish> dishes = dishesByIngredient.get(stockID);
+                    if (dishes == null) {
+                        dishes = new ArrayList<Dish>();
+                        dishesByIngredient.put(stockID, dishes);
+                    }
+                    if (dishes.isEmpty() || dishes.get(dishes.size() - 1) != dish) {
+                        dishes.add(dish);
+                    }
+                }
+                refreshMaxServable(dish);
+            }
+        }
+        // order() checks a dish by looking it up again by name
+        availableDishes = new AvailableDishIndex(menuVar, dish -> findDish(dish.getName()).getDish());
+    }
+
+    /*
+     * Recomputes how many of the dish the current stock can make (0 if an ingredient is missing)
+     */
+    private void refreshMaxServable(Dish dish) {
+        synchronized (dish) {
+            int maxServable = Integer.MAX_VALUE;
+            for (int stockID : dish.getStockID()) {
+                StockNode stockNode = findStockNode(stockID);
+                maxServable = Math.min(maxServable, stockNode == null ? 0 : stockNode.getIngredient().getStockLevel());
+            }
+            dish.setMaxServable(maxServable);
+        }
+        if (availableDishes != null) {
+            availableDishes.update(dish);
+        }
+    }
+
+    /**
+     * Returns how many of a dish can be prepared with the current stock, without looking at the stock table.
+     * 
+     * @param dishName - the name of the dish
+     * @return the max servable quantity, 0 if the dish is not on the menu
+     */
+
+    public int maxServable (String dishName) {
+        MenuNode dishNode = findDish(dishName);
+        return dishNode == null ? 0 : dishNode.getDish().getMaxServable();
+    }
+
+    /**
+     * Returns a snapshot of the availability of the whole menu for front-of-house displays.
+     * 
+     * @return map from dish name to its max servable quantity, in menu order
+     */
+
+    public LinkedHashMap<String, Integer> availabilitySnapshot () {
+        LinkedHashMap<String, Integer> snapshot = new LinkedHashMap<String, Integer>();
+        for (MenuNode head : menuVar) {
+            for (MenuNode ptr = head; ptr != null; ptr = ptr.getNextMenuNode()) {
+                snapshot.putIfAbsent(ptr.getDish().getName(), ptr.getDish().getMaxServable());
+            }
+        }
+        return snapshot;
     }
 
 
@@ -374,24 +894,237 @@ public class RUHungry {
      * The front of the list is transactionVar.
      *
      * 1. create a new TransactionNode with the TransactionData paramenter.
-     * 2. add the TransactionNode at the end of the linked list transactionVar.
+     * 2. add the TransactionNode at the end of the linked list transactionVar (transactionTail
+     *    points at the last node, so no traversal is needed).
+     * 3. add the transaction to the analytics (success/failure counts and profit used by
+     *    profit() and printRestaurant(), and the per type, per item and per interval totals).
+     *    A transaction being restored is added to no interval, since it did not happen now.
+     * 4. append the transaction to the journal if one is open.
+     * 
+     * Synchronized so orderConcurrently() can record transactions from several threads.
      * 
      * @param data - TransactionData node to be added to transactionVar
      */
 
-    public void addTransactionNode (TransactionData data){ 
+    public synchronized void addTransactionNode (TransactionData data){ 
             TransactionNode newNode = new TransactionNode(data, null);
         
             if (transactionVar == null) {
                 transactionVar = newNode;
             } else {
-                TransactionNode current = transactionVar;
-                while (current.getNext() != null) {
-                    current = current.getNext();
+                transactionTail.setNext(newNode);
+            }
+            transactionTail = newNode;
+
+            if (restoringTransactions) {
+                analytics.recordUntimed(data);
+            } else {
+                analytics.record(data);
+            }
+            if ("order".equals(data.getType())) {
+                (data.getSuccess() ? ordersSucceeded : ordersFailed).increment();
+            }
+
+            if (journal != null) {
+                try {
+                    journal.append(data);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+    /**
+     * Starts recording every transaction added from now on to an append-only journal file.
+     * If the file already exists new transactions are appended to it.
+     * 
+     * @param fileName - the journal file
+     * @param groupSize - number of transactions written and synced to disk together
+     */
+
+    public void openJournal (String fileName, int groupSize) {
+        closeJournal();
+        try {
+            journal = new TransactionJournal(fileName, groupSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes any pending transactions to the journal and stops journaling.
+     */
+
+    public void closeJournal () {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            journal = null;
+        }
+    }
+
+    /**
+     * Forces every transaction recorded so far to the journal file.
+     */
+
+    public void commitJournal () {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Rebuilds transactionVar and the stock levels from a journal file.
+     * 
+     * Call it after menu() and createStockHashTable() have loaded the state the journal started
+     * from. Each transaction is added to transactionVar and its stock change is applied again:
+     *      - successful order: every ingredient of the dish loses amount
+     *      - successful donation: the ingredient loses amount
+     *      - successful restock: the ingredient gains amount
+     * A reset marker clears transactionVar (like resetFrontNode()) but keeps the stock levels.
+     * Replayed transactions are not written to the journal again, and since the journal does not
+     * keep the time of a transaction they count towards no analytics interval.
+     * 
+     * @param fileName - the journal file
+     */
+
+    public void replayJournal (String fileName) {
+        List<TransactionData> records;
+        try {
+            records = TransactionJournal.read(fileName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        TransactionJournal openJournal = journal;
+        journal = null;
+        restoringTransactions = true;
+        try {
+            for (TransactionData data : records) {
+                if (data == null) {
+                    resetFrontNode();
+                    continue;
+                }
+                addTransactionNode(data);
+                if (!data.getSuccess()) {
+                    continue;
+                }
+                if (data.getType().equals("order")) {
+                    updateStockDish(findDish(data.getItem()).getDish(), data.getAmount());
+                } else if (data.getType().equals("donation")) {
+                    updateStock(data.getItem(), -1, -data.getAmount());
+                } else if (data.getType().equals("restock")) {
+                    updateStock(data.getItem(), -1, data.getAmount());
                 }
-                current.setNext(newNode);
             }
+        } finally {
+            journal = openJournal;
+            restoringTransactions = false;
         }
+    }
+
+    /**
+     * Writes the whole state of the restaurant (menu with prices and profits, stock table,
+     * tables and parties, transactions) to a binary snapshot file. See RestaurantSnapshot.
+     * 
+     * @param fileName - the snapshot file, replaced if it exists
+     */
+
+    public void saveSnapshot (String fileName) {
+        try {
+            RestaurantSnapshot.write(this, fileName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replaces the state of the restaurant with the one saved in a snapshot file, instead of
+     * calling menu(), createStockHashTable(), updatePriceAndProfit() and createTables() again.
+     * 
+     * The stock table keeps the size and chain order it was saved with, and the lookup and
+     * availability indexes are rebuilt; the ingredient name index points at the same nodes as
+     * when the snapshot was saved. The transactions are added again in order, so profit() and
+     * the analytics totals match; they are not written to the journal. The analytics intervals
+     * are restored as saved, not re-timed, if the snapshot used the same interval length.
+     * 
+     * @param fileName - the snapshot file
+     */
+
+    public void restoreSnapshot (String fileName) {
+        RestaurantSnapshot snapshot;
+        try {
+            snapshot = RestaurantSnapshot.read(fileName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        categoryVar = snapshot.getCategoryArray();
+        menuVar = snapshot.getMenu();
+        if (menuVar != null) {
+            buildMenuIndex();
+        } else {
+            dishIndex = null;
+            categoryIndex = null;
+        }
+
+        stockVar = snapshot.getStockVar();
+        stockVarSize = stockVar == null ? 0 : stockVar.length;
+        stockLoadFactor = snapshot.getStockLoadFactor();
+        stockCount = 0;
+        stockNameIndex = stockVar == null ? null : new HashMap<String, StockNode>();
+        for (StockNode node : snapshot.getNameIndexedStock()) {
+            stockNameIndex.put(normalize(node.getIngredient().getName()), node);
+        }
+        synchronized (reorderIndex) {
+            reorderIndex.clear();
+            if (stockVar != null) {
+                for (StockNode head : stockVar) {
+                    for (StockNode ptr = head; ptr != null; ptr = ptr.getNextStockNode()) {
+                        Ingredient ingredient = ptr.getIngredient();
+                        stockCount++;
+                        stockNameIndex.putIfAbsent(normalize(ingredient.getName()), ptr); // every name was saved with its indexed node
+                        if (ingredient.getReorderThreshold() > 0) {
+                            reorderIndex.add(ingredient);
+                        }
+                    }
+                }
+            }
+        }
+        dishesByIngredient = null;
+        availableDishes = null;
+        buildAvailabilityIndex();
+
+        tableSeats = snapshot.getTableSeats();
+        tables = snapshot.getTables();
+        leftQueueVar = snapshot.getLeftQueue();
+
+        TransactionJournal openJournal = journal;
+        journal = null;
+        restoringTransactions = true;
+        try {
+            resetFrontNode();
+            for (TransactionData data : snapshot.getTransactions()) {
+                addTransactionNode(data);
+            }
+            if (snapshot.getIntervalLength() == analytics.getIntervalLength()) {
+                for (Map.Entry<Long, TransactionAnalytics.Totals> interval : snapshot.getIntervals().entrySet()) {
+                    analytics.restoreInterval(interval.getKey(), interval.getValue());
+                }
+            }
+        } finally {
+            journal = openJournal;
+            restoringTransactions = false;
+        }
+    }
 
 
     /**
@@ -408,6 +1141,9 @@ public class RUHungry {
      * 3. return boolean based on whether you can sell the dish or not
      * HINT! --> once you determine you can't sell the dish, break and return
      * 
+     * Once both the menu and the stock are loaded, the dish's max servable quantity
+     * (kept up to date as stock changes) answers this without visiting the ingredients.
+     * 
      * @param dishName - String of dish that's being requested
      * @param numberOfDishes - int of how many of that dish is being ordered
      * @return boolean
@@ -420,6 +1156,9 @@ public class RUHungry {
             return false;
         }
         Dish dish = dishNode.getDish();
+        if (dishesByIngredient != null) {
+            return dish.getMaxServable() >= numberOfDishes;
+        }
         int[] stockIDs = dish.getStockID();
         for (int stockID : stockIDs) {
             StockNode stockNode = findStockNode(stockID);
@@ -445,15 +1184,34 @@ public class RUHungry {
      *          - It is possible that no dish in the entire category can be prepared.
      *          - Note: the next dish the customer chooses is always the one that comes right after the one that could not be prepared. 
      * 
+     * Once both the menu and the stock are loaded, the dish the customer ends up with is found in
+     * availableDishes instead of by checking every dish in between; the dishes in between are the
+     * ones recorded as unsuccessful.
+     * 
+     * The time every order takes is recorded in the order.latency_ns histogram (see getMetrics()).
+     * 
      * @param dishName - String of dish that's been ordered
      * @param quantity - int of how many of that dish has been ordered
      */
 
     public void order (String dishName, int quantity){
+        long start = System.nanoTime();
+        try {
+            placeOrder(dishName, quantity);
+        } finally {
+            orderLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    private void placeOrder (String dishName, int quantity){
             MenuNode dishNode = findDish(dishName);
             if (dishNode == null) {
                 return;
             }
+            if (availableDishes != null) {
+                orderWithSubstitutes(dishNode.getDish(), quantity);
+                return;
+            }
             MenuNode ptr = dishNode;
             int index = findCategoryIndex(dishNode.getDish().getCategory());
             int dishesChecked = 0;
@@ -473,6 +1231,26 @@ public class RUHungry {
                 dishesChecked++;
             } while (dishesChecked < categorySize(index) && ptr != dishNode);
         }
+
+        /*
+         * order() using availableDishes: records a failed order for every dish from the one ordered
+         * up to (not including) the first available one in ring order, then sells that one
+         */
+        private void orderWithSubstitutes (Dish ordered, int quantity) {
+            int index = findCategoryIndex(ordered.getCategory());
+            int start = availableDishes.position(ordered);
+            int size = availableDishes.size(index);
+            int found = availableDishes.nextAvailable(index, start, quantity);
+            int failed = found == -1 ? size : Math.floorMod(found - start, size);
+            for (int i = 0; i < failed; i++) {
+                Dish dish = availableDishes.dishAt(index, (start + i) % size);
+                addTransactionNode(new TransactionData("order", dish.getName(), quantity, 0, false));
+            }
+            if (found != -1) {
+                ordersProcessed(availableDishes.dishAt(index, found), quantity);
+            }
+        }
+
         private void ordersProcessed (Dish dish, int quantity) {
             double profit = dish.getProfit() * quantity;
             TransactionData transactionData = new TransactionData("order", dish.getName(), quantity, profit, true);
@@ -498,30 +1276,226 @@ public class RUHungry {
             }
             return size;
         }
+
+    /**
+     * This method processes a whole stream of orders in one pass.
+     * 
+     * The result (transactions recorded, stock levels and profit) is the same as calling
+     * order(dishNames[i], quantities[i]) for every i in order, but every dish is resolved
+     * with findDish() and every ingredient with findStockNode() only once per batch, and
+     * the size of each category is counted only once. Like order(), a dish using an ingredient
+     * ID that is not in the stock table counts as out of stock.
+     * 
+     * @param dishNames - names of the dishes ordered
+     * @param quantities - quantities[i] is how many of dishNames[i] has been ordered
+     */
+
+    public void orderBatch (String[] dishNames, int[] quantities) {
+        if (dishNames.length != quantities.length) {
+            throw new IllegalArgumentException("Got " + dishNames.length + " dish names but " + quantities.length + " quantities");
+        }
+        HashMap<String, MenuNode> orderedDishes = new HashMap<String, MenuNode>();
+        IdentityHashMap<Dish, Ingredient[]> dishIngredients = new IdentityHashMap<Dish, Ingredient[]>();
+        IdentityHashMap<Dish, Ingredient[]> availabilityIngredients = new IdentityHashMap<Dish, Ingredient[]>();
+        int[] categorySizes = new int[menuVar.length];
+        Arrays.fill(categorySizes, -1);
+
+        for (int i = 0; i < dishNames.length; i++) {
+            String key = normalize(dishNames[i]);
+            MenuNode dishNode = orderedDishes.get(key);
+            if (dishNode == null && !orderedDishes.containsKey(key)) {
+                dishNode = findDish(dishNames[i]);
+                orderedDishes.put(key, dishNode);
+            }
+            if (dishNode == null) {
+                continue;
+            }
+            int quantity = quantities[i];
+            int index = findCategoryIndex(dishNode.getDish().getCategory());
+            if (categorySizes[index] == -1) {
+                categorySizes[index] = categorySize(index);
+            }
+            MenuNode ptr = dishNode;
+            int dishesChecked = 0;
+            do {
+                Dish dish = ptr.getDish();
+                // checkDishAvailability() looks the dish up again by name, so check the ingredients of that dish
+                Ingredient[] needed = availabilityIngredients.get(dish);
+                if (needed == null) {
+                    needed = resolveIngredients(findDish(dish.getName()).getDish(), dishIngredients);
+                    availabilityIngredients.put(dish, needed);
+                }
+                boolean isAvailable = true;
+                for (Ingredient ingredient : needed) {
+                    if (ingredient == null || ingredient.getStockLevel() < quantity) {
+                        isAvailable = false;
+                        break;
+                    }
+                }
+                if (isAvailable) {
+                    addTransactionNode(new TransactionData("order", dish.getName(), quantity, dish.getProfit() * quantity, true));
+                    for (Ingredient ingredient : resolveIngredients(dish, dishIngredients)) {
+                        if (ingredient != null) {
+                            adjustStock(ingredient, -quantity);
+                        }
+                    }
+                    break;
+                } else {
+                    addTransactionNode(new TransactionData("order", dish.getName(), quantity, 0, false));
+                }
+                ptr = ptr.getNextMenuNode();
+                if (ptr == null) {
+                    ptr = menuVar[index];
+                }
+                dishesChecked++;
+            } while (dishesChecked < categorySizes[index] && ptr != dishNode);
+        }
+    }
+
+    /**
+     * Reads an order file and processes all of its orders with orderBatch().
+     * 
+     * The input file is formatted like order1.in:
+     * - an integer n contains the number of orders
+     * - n lines containing the quantity followed by the dish name
+     * 
+     * @param inputFile - the order file
+     */
+
+    public void orderBatch (String inputFile) {
+        parse(inputFile, this::orderBatch);
+    }
+
+    private void orderBatch (InputFileParser in) throws IOException {
+        int numberOfOrders = in.readInt();
+        String[] dishNames = new String[numberOfOrders];
+        int[] quantities = new int[numberOfOrders];
+        for (int i = 0; i < numberOfOrders; i++) {
+            quantities[i] = in.readInt();
+            in.readChar();
+            dishNames[i] = in.readLine();
+        }
+        orderBatch(dishNames, quantities);
+    }
+
+    /*
+     * Looks up the Ingredient of every stock ID of the dish once and caches the result
+     * (null for a stock ID missing from the stock table, which has no stock)
+     */
+    private Ingredient[] resolveIngredients(Dish dish, IdentityHashMap<Dish, Ingredient[]> cache) {
+        Ingredient[] ingredients = cache.get(dish);
+        if (ingredients == null) {
+            int[] stockIDs = dish.getStockID();
+            ingredients = new Ingredient[stockIDs.length];
+            for (int i = 0; i < stockIDs.length; i++) {
+                StockNode stockNode = findStockNode(stockIDs[i]);
+                ingredients[i] = stockNode == null ? null : stockNode.getIngredient();
+            }
+            cache.put(dish, ingredients);
+        }
+        return ingredients;
+    }
+
+    /**
+     * Thread-safe version of order() so several order terminals can take orders at the same time.
+     * 
+     * The customer walks the category the same way order() does, but checking that every ingredient
+     * of a dish is in stock and deducting them happens atomically: the striped locks guarding the
+     * dish's ingredients are taken in ascending stripe order (so two orders can never deadlock),
+     * the stock levels are checked, and they are deducted before the locks are released. Orders on
+     * dishes with no ingredient stripe in common proceed in parallel and stock is never oversold.
+     * 
+     * Only orderConcurrently() may run concurrently with itself. The menu and stock table must be
+     * fully loaded first, and methods that change them (or donation() and restock()) must not run
+     * at the same time. Like order(), the time every order takes is recorded in order.latency_ns.
+     * 
+     * @param dishName - String of dish that's been ordered
+     * @param quantity - int of how many of that dish has been ordered
+     */
+
+    public void orderConcurrently (String dishName, int quantity){
+        long start = System.nanoTime();
+        try {
+            placeOrderConcurrently(dishName, quantity);
+        } finally {
+            orderLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    private void placeOrderConcurrently (String dishName, int quantity){
+        MenuNode dishNode = findDish(dishName);
+        if (dishNode == null) {
+            return;
+        }
+        MenuNode ptr = dishNode;
+        int index = findCategoryIndex(dishNode.getDish().getCategory());
+        int size = categorySize(index);
+        int dishesChecked = 0;
+        do {
+            Dish dish = ptr.getDish();
+            if (tryOrderAtomically(findDish(dish.getName()).getDish(), dish, quantity)) {
+                break;
+            }
+            addTransactionNode(new TransactionData("order", dish.getName(), quantity, 0, false));
+            ptr = ptr.getNextMenuNode();
+            if (ptr == null) {
+                ptr = menuVar[index];
+            }
+            dishesChecked++;
+        } while (dishesChecked < size && ptr != dishNode);
+    }
+
+    /*
+     * Under the stripe locks of both dishes: checks the stock of checkedDish (like checkDishAvailability())
+     * and, if it is available, deducts the ingredients of soldDish and records the sale.
+     * Returns true if the dish was sold.
+     */
+    private boolean tryOrderAtomically(Dish checkedDish, Dish soldDish, int quantity) {
+        long stripes = 0; // bit i set: stockLocks[i] is needed
+        for (int stockID : checkedDish.getStockID()) {
+            stripes |= 1L << Math.floorMod(stockID, STOCK_LOCK_STRIPES);
+        }
+        for (int stockID : soldDish.getStockID()) {
+            stripes |= 1L << Math.floorMod(stockID, STOCK_LOCK_STRIPES);
+        }
+        for (long remaining = stripes; remaining != 0; remaining &= remaining - 1) {
+            stockLocks[Long.numberOfTrailingZeros(remaining)].lock(); // lowest stripe first
+        }
+        try {
+            for (int stockID : checkedDish.getStockID()) {
+                StockNode stockNode = findStockNode(stockID);
+                if (stockNode == null || stockNode.getIngredient().getStockLevel() < quantity) {
+                    return false; // an ingredient missing from the stock table has no stock
+                }
+            }
+            for (int stockID : soldDish.getStockID()) {
+                StockNode stockNode = findStockNode(stockID);
+                if (stockNode != null) {
+                    adjustStock(stockNode.getIngredient(), -quantity);
+                }
+            }
+            addTransactionNode(new TransactionData("order", soldDish.getName(), quantity, soldDish.getProfit() * quantity, true));
+            return true;
+        } finally {
+            for (long remaining = stripes; remaining != 0; remaining &= ~Long.highestOneBit(remaining)) {
+                stockLocks[63 - Long.numberOfLeadingZeros(remaining)].unlock();
+            }
+        }
+    }
     
     
 
     /**
      * This method returns the total profit for the day
      *
-     * The profit is computed by traversing the transaction linked list (transactionVar) 
-     * adding up all the profits for the day
+     * The profit of every successful transaction is added up by addTransactionNode() as the
+     * transaction is recorded, in the same order a traversal of transactionVar would add them.
      * 
      * @return profit - double value of the total profit for the day
      */
 
-    public double profit () {
-        double profit = 0;
-        TransactionNode node = transactionVar;
-        while(node != null)
-        {
-            if(node.getData().getSuccess() == true)
-            {
-                profit += node.getData().getProfit();
-            }
-            node = node.getNext();
-        }
-        return profit;
+    public synchronized double profit () {
+        return analytics.overallProfit();
     }
 
 
@@ -590,7 +1564,115 @@ public class RUHungry {
                 addTransactionNode(transaction);
             }
         } else {
-            System.out.println("Ingredient not found: " + ingredientName);
+            println("Ingredient not found: " + ingredientName);
+        }
+    }
+
+    /**
+     * Sets the stock level below which an ingredient should be restocked.
+     * 
+     * @param ingredientID - the ID of the ingredient
+     * @param threshold - the reorder threshold, 0 to stop tracking the ingredient
+     * @return true if the ingredient was found
+     */
+
+    public boolean setReorderThreshold(int ingredientID, int threshold) {
+        StockNode stockNode = findStockNode(ingredientID);
+        if (stockNode == null) {
+            return false;
+        }
+        Ingredient ingredient = stockNode.getIngredient();
+        synchronized (reorderIndex) {
+            reorderIndex.remove(ingredient);
+            ingredient.setReorderThreshold(threshold);
+            if (threshold > 0) {
+                reorderIndex.add(ingredient);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns every ingredient whose stock level is below its reorder threshold,
+     * most depleted (relative to its threshold) first.
+     * 
+     * @return the ingredients to restock
+     */
+
+    public List<Ingredient> ingredientsToRestock() {
+        return ingredientsToRestock(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the most depleted ingredients whose stock level is below their reorder threshold.
+     * Only the low ingredients are visited, so this does not depend on the size of the stock.
+     * 
+     * @param limit - the most ingredients to return
+     * @return the ingredients to restock, most depleted first
+     */
+
+    public List<Ingredient> ingredientsToRestock(int limit) {
+        List<Ingredient> low = new ArrayList<Ingredient>();
+        synchronized (reorderIndex) {
+            for (Ingredient ingredient : reorderIndex) {
+                if (low.size() >= limit || ingredient.getStockLevel() >= ingredient.getReorderThreshold()) {
+                    break;
+                }
+                low.add(ingredient);
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Restocks every ingredient below its reorder threshold back up to the threshold,
+     * using restock() so each one is paid for and recorded as a transaction.
+     * 
+     * @return the number of ingredients that were restocked
+     */
+
+    public int restockLowStock() {
+        int restocked = 0;
+        for (Ingredient ingredient : ingredientsToRestock()) {
+            int successes = getTransactionSuccesses();
+            restock(ingredient.getName(), ingredient.getReorderThreshold() - ingredient.getStockLevel());
+            if (getTransactionSuccesses() > successes) {
+                restocked++;
+            }
+        }
+        return restocked;
+    }
+
+    /**
+     * This method runs every transaction of a transaction file, in order.
+     * 
+     * The input file is formatted like transaction1.in:
+     * - an integer n contains the number of transactions
+     * - n lines containing the type (order, donation or restock), the quantity and the dish or ingredient name
+     * 
+     * @param inputFile - the transaction file
+     */
+
+    public void processTransactions (String inputFile) {
+        parse(inputFile, this::processTransactions);
+    }
+
+    private void processTransactions (InputFileParser in) throws IOException {
+        int numberOfTransactions = in.readInt();
+        for (int i = 0; i < numberOfTransactions; i++) {
+            String type = in.readString();
+            int quantity = in.readInt();
+            in.readChar();
+            String item = in.readLine();
+            if (type.equalsIgnoreCase("order")) {
+                order(item, quantity);
+            } else if (type.equalsIgnoreCase("donation")) {
+                donation(item, quantity);
+            } else if (type.equalsIgnoreCase("restock")) {
+                restock(item, quantity);
+            } else {
+                throw new IllegalArgumentException("Unknown transaction type " + type + " (transaction " + (i + 1) + ")");
+            }
         }
     }
 
@@ -610,15 +1692,17 @@ public class RUHungry {
      */
 
     public void createTables ( String inputFile ) { 
+        parse(inputFile, this::createTables);
+    }
 
-        StdIn.setFile(inputFile);
+    private void createTables ( InputFileParser in ) throws IOException {
     
-        int numberOfTables = StdIn.readInt();
+        int numberOfTables = in.readInt();
         tableSeats = new int[numberOfTables];
         tables     = new Party[numberOfTables];
 
         for ( int t = 0; t < numberOfTables; t++ ) {
-            tableSeats[t] = StdIn.readInt() * StdIn.readInt();
+            tableSeats[t] = in.readInt() * in.readInt();
         }
     }
 
@@ -651,9 +1735,111 @@ public class RUHungry {
      */
 
     public void seatAllGuests ( Queue<Party> waitingQueue ) {
+        seatAllGuests(waitingQueue, false);
+    }
+
+    /**
+     * Seats a party at a table. Used by callers that decide the table themselves,
+     * like RestaurantSimulator.
+     * 
+     * @param table - index of the table in tables
+     * @param party - the party sitting down
+     */
+
+    public void seatParty ( int table, Party party ) {
+        tables[table] = party;
+        party.setTableIndex(table);
+    }
+
+    /**
+     * Frees a table: the party sitting there leaves and is added to leftQueueVar.
+     * 
+     * @param table - index of the table in tables
+     * @return the party that left, null if the table was already free
+     */
+
+    public Party releaseTable ( int table ) {
+        Party party = tables[table];
+        if (party != null) {
+            tables[table] = null;
+            if (leftQueueVar == null) {
+                leftQueueVar = new Queue<Party>();
+            }
+            leftQueueVar.enqueue(party);
+        }
+        return party;
+    }
+
+    /**
+     * Same as seatAllGuests(), except that every party is seated at the smallest table that fits
+     * them instead of the first one. When no fitting table is free, the party at the smallest
+     * table that fits is asked to leave. Ties go to the lowest table index.
+     * 
+     * @param waitingQueue - queue containing parties waiting to be seated
+     */
+
+    public void seatAllGuestsSmallestFit ( Queue<Party> waitingQueue ) {
+        seatAllGuests(waitingQueue, true);
+    }
+
+    /*
+     * Seats the waiting parties using a TableIndex, so every party finds a table in O(log t)
+     * instead of scanning tableSeats.
+     */
+    private void seatAllGuests ( Queue<Party> waitingQueue, boolean smallestFit ) {
+        tables = new Party[tableSeats.length];
+        leftQueueVar = new Queue<Party>();
+        TableIndex tableIndex = new TableIndex(tableSeats);
+
+        while (!waitingQueue.isEmpty()) {
+            Party party = waitingQueue.dequeue();
+            int size = party.getNumberOfPeople();
+            int table = smallestFit ? tableIndex.smallestFree(size) : tableIndex.firstFree(size);
+            if (table == -1) {
+                table = smallestFit ? tableIndex.smallestFit(size) : tableIndex.firstFit(size);
+                if (table == -1) {
+                    throw new IllegalArgumentException("No table can seat party " + party.getName() + " of " + size);
+                }
+                leftQueueVar.enqueue(tables[table]);
+            }
+            tables[table] = party;
+            party.setTableIndex(table);
+            tableIndex.occupy(table);
+        }
+
+        for (int t = 0; t < tables.length; t++) {
+            if (tables[t] != null) {
+                leftQueueVar.enqueue(tables[t]);
+                tables[t] = null;
+            }
+        }
+    }
+
+    /*
+     * Output helpers: write to this restaurant's output if one was set, StdOut otherwise
+     */
+    private void print(Object x) {
+        if (output != null) {
+            output.print(x);
+        } else {
+            StdOut.print(x);
+        }
+    }
 
-    // WRITE YOUR CODE HERE
+    private void println(Object x) {
+        if (output != null) {
+            output.println(x);
+        } else {
+            StdOut.println(x);
+        }
+    }
 
+    private void println() {
+        if (output != null) {
+            output.println();
+        } else {
+            StdOut.println();
+        }
     }
 
     /**
@@ -663,90 +1849,83 @@ public class RUHungry {
      */
     public void printRestaurant() {
         // 1. Print out menu
-        StdOut.println("Menu:");
+        println("Menu:");
         if (categoryVar != null) {
             for (int i=0; i < categoryVar.length; i++) {
-                StdOut.print(categoryVar[i] + ":");
-                StdOut.println();
+                print(categoryVar[i] + ":");
+                println();
 
                 MenuNode ptr = menuVar[i];
                 while (ptr != null) {
-                    StdOut.print(ptr.getDish().getName() + "  Price: $" +
+                    print(ptr.getDish().getName() + "  Price: $" +
                     ((Math.round(ptr.getDish().getPriceOfDish() * 100.0)) / 100.0) + " Profit: $" + ((Math.round(ptr.getDish().getProfit() * 100.0)) / 100.0));
-                    StdOut.println();
+                    println();
 
                     ptr = ptr.getNextMenuNode();
                 }
-                StdOut.println();
+                println();
             }
         }
         else {
-            StdOut.println("Empty - categoryVar is null.");
+            println("Empty - categoryVar is null.");
         }
         // 2. Print out stock
-        StdOut.println("Stock:");
+        println("Stock:");
         if (stockVar != null) {
-            for (int i=0; i < 10; i++) {
-                StdOut.println("Index " + i);
+            for (int i=0; i < stockVar.length; i++) {
+                println("Index " + i);
                 StockNode ptr = stockVar[i];
                 while (ptr != null) {
-                    StdOut.print(ptr.getIngredient().getName() + "  ID: " + ptr.getIngredient().getID() + " Price: " +
+                    print(ptr.getIngredient().getName() + "  ID: " + ptr.getIngredient().getID() + " Price: " +
                     ((Math.round(ptr.getIngredient().getCost() *100.0)) / 100.0) + " Stock Level: " + ptr.getIngredient().getStockLevel());
-                    StdOut.println();
+                    println();
     
                     ptr = ptr.getNextStockNode();
                 }
     
-                StdOut.println();
+                println();
             }
         }
         else {
-            StdOut.println("Empty - stockVar is null.");
+            println("Empty - stockVar is null.");
         }
         // 3. Print out transactions
-        StdOut.println("Transactions:");
+        println("Transactions:");
         if (transactionVar != null) {
             TransactionNode ptr = transactionVar;
-            int successes = 0;
-            int failures = 0;
             while (ptr != null) {
                 String type = ptr.getData().getType();
                 String item = ptr.getData().getItem();
                 int amount = ptr.getData().getAmount();
                 double profit = ptr.getData().getProfit();
                 boolean success = ptr.getData().getSuccess();
-                if (success == true){
-                    successes += 1;
-                }
-                else if (success == false){
-                    failures += 1;
-                }
 
-                StdOut.println("Type: " + type + ", Name: " + item + ", Amount: " + amount + ", Profit: $" + ((Math.round(profit * 100.0)) / 100.0) + ", Was it a Success? " + success);
+                println("Type: " + type + ", Name: " + item + ", Amount: " + amount + ", Profit: $" + ((Math.round(profit * 100.0)) / 100.0) + ", Was it a Success? " + success);
                 
                 ptr = ptr.getNext();
             }
-            StdOut.println("Total number of successful transactions: " + successes);
-            StdOut.println("Total number of unsuccessful transactions: " + failures);
-            StdOut.println("Total profit remaining: $" + ((Math.round(profit() * 100.0)) / 100.0));
+            TransactionAnalytics.Totals totals = analytics.overall();
+            println("Total number of successful transactions: " + totals.getSuccesses());
+            println("Total number of unsuccessful transactions: " + totals.getFailures());
+            println("Total profit remaining: $" + ((Math.round(profit() * 100.0)) / 100.0));
         }
         else {
-            StdOut.println("Empty - transactionVar is null.");
+            println("Empty - transactionVar is null.");
         }
         // 4. Print out tables
-        StdOut.println("Tables and Parties:");
+        println("Tables and Parties:");
         restaurant.Queue<Party> leftQueue = leftQueueVar;
         if (leftQueueVar != null) {
-            StdOut.println(("Parties in order of leaving:"));
+            println(("Parties in order of leaving:"));
             int counter = 0;
             while (!leftQueue.isEmpty()) {
                 Party removed = leftQueue.dequeue();
                 counter += 1;
-                StdOut.println(counter + ": " + removed.getName());
+                println(counter + ": " + removed.getName());
             }
         }
         else {
-            StdOut.println("Empty -- leftQueueVar is empty");
+            println("Empty -- leftQueueVar is empty");
         }
     }
 }
\ No newline at end of file
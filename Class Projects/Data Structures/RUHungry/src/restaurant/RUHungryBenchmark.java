@@ -0,0 +1,175 @@
+package restaurant;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures throughput and allocation rate of the public RUHungry operations on synthetic
+ * restaurants of several sizes (see SyntheticRestaurant).
+ *
+ * At every scale the menu has that many dishes (50 per category, 5 ingredients each) and the
+ * stock has that many ingredients, all stocked high enough that orders never run out. Every
+ * operation is warmed up, then run for several timed iterations. Each iteration calls the
+ * operation in chunks until ITERATION_MILLIS have passed; chunks grow until one takes about
+ * 10 microseconds, so cheap operations are not dominated by reading the clock. Throughput is
+ * the median over the iterations, and allocation is measured with the JVM's per-thread
+ * allocation counter. The transaction list is reset between iterations so it does not grow
+ * without bound.
+ *
+ * Every operation returns a value derived from its result (0 for operations that return nothing),
+ * and the values are summed into a checksum printed at the end, so the JIT cannot drop a lookup
+ * whose result is otherwise unused.
+ *
+ * args[0] (optional) comma separated scales, default 1000,10000,100000,1000000
+ * args[1] (optional) only run operations whose name contains this text
+ *
+ * To run: java -Xmx4g -cp bin restaurant.RUHungryBenchmark 1000,10000 order
+ */
+
+public class RUHungryBenchmark {
+
+    private static final int WARMUP_ITERATIONS   = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long ITERATION_MILLIS   = 300;
+    private static final int MAX_CHUNK           = 1024; // most calls between clock reads
+    private static final int BATCH               = 64;
+    private static final int QUERIES             = 1 << 16;
+
+    private static long sink; // sum of the values returned by the operations, printed by main()
+
+    /*
+     * One benchmarked operation, called with an increasing counter, returning a value that depends on its result
+     */
+    private interface Operation {
+        long run(int i);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String scales = args.length > 0 ? args[0] : "1000,10000,100000,1000000";
+        String filter = args.length > 1 ? args[1] : "";
+
+        StdOut.printf("%-10s %-28s %15s %12s%n", "scale", "operation", "ops/s", "bytes/op");
+        for (String scale : scales.split(",")) {
+            run(Integer.parseInt(scale.trim()), filter);
+        }
+        StdOut.println("checksum " + sink);
+    }
+
+    private static void run(int items, String filter) throws IOException {
+        File directory = new File(System.getProperty("java.io.tmpdir"));
+        File menuFile = File.createTempFile("menu", ".in", directory);
+        File stockFile = File.createTempFile("stock", ".in", directory);
+        File orderFile = File.createTempFile("order", ".in", directory);
+        menuFile.deleteOnExit();
+        stockFile.deleteOnExit();
+        orderFile.deleteOnExit();
+        int categories = Math.max(1, items / 50);
+        SyntheticRestaurant.writeStock(stockFile, items, 1000000000, 1);
+        SyntheticRestaurant.writeMenu(menuFile, items, categories, items, 5, 2);
+        SyntheticRestaurant.writeOrders(orderFile, 1000, items, 3, 3);
+
+        final RUHungry rh = new RUHungry();
+        rh.setStockLoadFactor(0.75); // the synthetic stock file declares 10 buckets
+        rh.menu(menuFile.getPath());
+        rh.createStockHashTable(stockFile.getPath());
+        rh.updatePriceAndProfit();
+
+        // Random keys, generated up front so the generator is not measured
+        Random random = new Random(4);
+        final String[] dishNames = new String[QUERIES];
+        final String[] ingredientNames = new String[QUERIES];
+        final int[] ingredientIDs = new int[QUERIES];
+        final String[] batchNames = new String[BATCH];
+        final int[] batchQuantities = new int[BATCH];
+        for (int i = 0; i < QUERIES; i++) {
+            dishNames[i] = "Dish " + random.nextInt(items);
+            int ingredient = random.nextInt(items);
+            ingredientNames[i] = "Ingredient " + ingredient;
+            ingredientIDs[i] = 100 + ingredient;
+        }
+        for (int i = 0; i < BATCH; i++) {
+            batchNames[i] = dishNames[i];
+            batchQuantities[i] = 1;
+        }
+        final int mask = QUERIES - 1;
+
+        measure(items, filter, "findDish", rh, i -> found(rh.findDish(dishNames[i & mask])));
+        measure(items, filter, "findStockNode(int)", rh, i -> found(rh.findStockNode(ingredientIDs[i & mask])));
+        measure(items, filter, "findStockNode(String)", rh, i -> found(rh.findStockNode(ingredientNames[i & mask])));
+        measure(items, filter, "checkDishAvailability", rh, i -> rh.checkDishAvailability(dishNames[i & mask], 1) ? 1 : 0);
+        measure(items, filter, "updateStock", rh, i -> { rh.updateStock(null, ingredientIDs[i & mask], (i & 1) == 0 ? -1 : 1); return 0; });
+        measure(items, filter, "order", rh, i -> { rh.order(dishNames[i & mask], 1); return 0; });
+        measure(items, filter, "orderBatch (per 64 orders)", rh, i -> { rh.orderBatch(batchNames, batchQuantities); return 0; });
+        measure(items, filter, "orderConcurrently", rh, i -> { rh.orderConcurrently(dishNames[i & mask], 1); return 0; });
+        measure(items, filter, "donation", rh, i -> { rh.donation(ingredientNames[i & mask], 1); return 0; });
+        measure(items, filter, "restock", rh, i -> { rh.restock(ingredientNames[i & mask], 1); return 0; });
+        measure(items, filter, "profit", rh, i -> Double.doubleToRawLongBits(rh.profit()));
+        measure(items, filter, "updateIngredientCost", rh, i -> rh.updateIngredientCost(ingredientIDs[i & mask], 1 + (i & 7)) ? 1 : 0);
+        measure(items, filter, "updatePriceAndProfit", rh, i -> { rh.updatePriceAndProfit(); return 0; });
+        measure(items, filter, "orderBatch(file, 1000 orders)", rh, i -> { rh.orderBatch(orderFile.getPath()); return 0; });
+
+        menuFile.delete();
+        stockFile.delete();
+        orderFile.delete();
+    }
+
+    private static void measure(int items, String filter, String name, RUHungry rh, Operation operation) {
+        if (!name.contains(filter)) {
+            return;
+        }
+        double[] throughput = new double[MEASURED_ITERATIONS];
+        long allocated = 0;
+        long calls = 0;
+        long results = 0;
+        for (int iteration = -WARMUP_ITERATIONS; iteration < MEASURED_ITERATIONS; iteration++) {
+            resetTransactions(rh);
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            long deadline = start + ITERATION_MILLIS * 1000000;
+            long now = start;
+            int i = 0;
+            int chunk = 1;
+            while (now < deadline) {
+                for (int c = 0; c < chunk; c++) {
+                    results += operation.run(i++);
+                }
+                long chunkStart = now;
+                now = System.nanoTime();
+                if (chunk < MAX_CHUNK && now - chunkStart < 10000) {
+                    chunk *= 2;
+                }
+            }
+            if (iteration >= 0) {
+                throughput[iteration] = i * 1e9 / (now - start);
+                allocated += allocatedBytes() - allocatedBefore;
+                calls += i;
+            }
+        }
+        sink += results;
+        Arrays.sort(throughput);
+        StdOut.printf("%-10d %-28s %15.0f %12.1f%n", items, name, throughput[MEASURED_ITERATIONS / 2], (double) allocated / calls);
+    }
+
+    private static long found(Object result) {
+        return result == null ? 0 : 1;
+    }
+
+    /*
+     * Empties the transaction list, keeping enough profit for donations and restocks to succeed
+     */
+    private static void resetTransactions(RUHungry rh) {
+        rh.resetFrontNode();
+        rh.addTransactionNode(new TransactionData("order", "Opening balance", 1, 1e15, true));
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
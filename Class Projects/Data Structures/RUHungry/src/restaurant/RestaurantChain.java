@@ -0,0 +1,210 @@
+package restaurant;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This file coordinates many RUHungry locations.
+ *
+ * Every location is its own RUHungry instance with its own input files and (optionally) its
+ * own output file. run() loads and processes the locations in parallel on a fixed thread pool;
+ * a location is only ever touched by one thread, so the single-threaded RUHungry methods are
+ * safe to use. Afterwards the chain-wide profit is added up from each location's transactions.
+ *
+ * To run: java -cp bin restaurant.RestaurantChain 4 name:menu.in:stock.in:tables1.in:transaction1.in:order1.in ...
+ * (each location is name:menu:stock:tables followed by any number of transaction*.in or
+ * order*.in files; files whose name starts with "order" are processed with orderBatch())
+ */
+
+public class RestaurantChain {
+
+    /**
+     * One restaurant location and the files it is loaded from and processes.
+     */
+    public static class Location {
+        private String name;
+        private String menuFile;
+        private String stockFile;
+        private String tablesFile;          // null if the location has no tables file
+        private List<String> inputFiles;    // transaction or order files, processed in order
+        private String outputFile;          // where printRestaurant() is written, null to skip printing
+        private RUHungry restaurant;        // set once the location has been loaded
+
+        private Location(String name, String menuFile, String stockFile, String tablesFile) {
+            this.name = name;
+            this.menuFile = menuFile;
+            this.stockFile = stockFile;
+            this.tablesFile = tablesFile;
+            this.inputFiles = new ArrayList<String>();
+        }
+
+        /*
+         * Adds a transaction file (transaction*.in format) or an order file (order*.in format,
+         * recognized by a file name starting with "order")
+         */
+        public Location addInputFile(String inputFile) {
+            inputFiles.add(inputFile);
+            return this;
+        }
+
+        public Location setOutputFile(String outputFile) {
+            this.outputFile = outputFile;
+            return this;
+        }
+
+        public String getName() { return name; }
+        public RUHungry getRestaurant() { return restaurant; }
+
+        /*
+         * Loads the location's files and processes its inputs, printing the result if asked to
+         */
+        private void run() {
+            RUHungry rh = new RUHungry();
+            rh.menu(menuFile);
+            rh.createStockHashTable(stockFile);
+            rh.updatePriceAndProfit();
+            if (tablesFile != null) {
+                rh.createTables(tablesFile);
+            }
+            for (String inputFile : inputFiles) {
+                if (new File(inputFile).getName().startsWith("order")) {
+                    rh.orderBatch(inputFile);
+                } else {
+                    rh.processTransactions(inputFile);
+                }
+            }
+            if (outputFile != null) {
+                PrintWriter out;
+                try {
+                    out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8));
+                } catch (FileNotFoundException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rh.setOutput(out);
+                rh.printRestaurant();
+                rh.setOutput(null);
+                out.close();
+            }
+            restaurant = rh;
+        }
+    }
+
+    private List<Location> locations;
+
+    /*
+     * Default constructor, the chain starts without locations
+     */
+    public RestaurantChain() {
+        locations = new ArrayList<Location>();
+    }
+
+    /**
+     * Adds a location to the chain.
+     *
+     * @param name - name of the location
+     * @param menuFile - the location's menu.in
+     * @param stockFile - the location's stock.in
+     * @param tablesFile - the location's tables*.in, or null
+     * @return the location, to add input files to
+     */
+
+    public Location addLocation(String name, String menuFile, String stockFile, String tablesFile) {
+        Location location = new Location(name, menuFile, stockFile, tablesFile);
+        locations.add(location);
+        return location;
+    }
+
+    public List<Location> getLocations() { return locations; }
+
+    /**
+     * Loads and processes every location, several at a time.
+     *
+     * @param threads - number of locations processed in parallel
+     */
+
+    public void run(int threads) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<Future<?>>();
+            for (Location location : locations) {
+                results.add(pool.submit(location::run));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Location " + locations.get(i).getName() + " failed", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for location " + locations.get(i).getName(), e);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Adds up the profit of every location that has been processed.
+     *
+     * @return the chain-wide profit
+     */
+
+    public double chainProfit() {
+        double profit = 0;
+        for (Location location : locations) {
+            if (location.restaurant != null) {
+                profit += location.restaurant.profit();
+            }
+        }
+        return profit;
+    }
+
+    /**
+     * Prints the profit and transaction counts of every location and of the whole chain.
+     */
+
+    public void printSummary() {
+        int successes = 0;
+        int failures = 0;
+        for (Location location : locations) {
+            RUHungry rh = location.restaurant;
+            if (rh == null) {
+                StdOut.println(location.name + ": not processed");
+                continue;
+            }
+            successes += rh.getTransactionSuccesses();
+            failures += rh.getTransactionFailures();
+            StdOut.println(location.name + ": Profit: $" + ((Math.round(rh.profit() * 100.0)) / 100.0)
+                + ", Successful transactions: " + rh.getTransactionSuccesses()
+                + ", Unsuccessful transactions: " + rh.getTransactionFailures());
+        }
+        StdOut.println("Chain: Profit: $" + ((Math.round(chainProfit() * 100.0)) / 100.0)
+            + ", Successful transactions: " + successes + ", Unsuccessful transactions: " + failures);
+    }
+
+    public static void main(String[] args) {
+        int threads = Integer.parseInt(args[0]);
+        RestaurantChain chain = new RestaurantChain();
+        for (int i = 1; i < args.length; i++) {
+            String[] parts = args[i].split(":");
+            Location location = chain.addLocation(parts[0], parts[1], parts[2], parts[3]);
+            for (int f = 4; f < parts.length; f++) {
+                location.addInputFile(parts[f]);
+            }
+        }
+        chain.run(threads);
+        chain.printSummary();
+    }
+}
@@ -0,0 +1,294 @@
+package restaurant;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * This file is a discrete-event simulator for a RUHungry restaurant.
+ *
+ * Every party goes through four timestamped events, kept in a binary heap (PriorityQueue)
+ * ordered by time, with ties broken in scheduling order so a run is deterministic:
+ *      - ARRIVAL:   the party joins the end of the waiting line
+ *      - SEATING:   the party sits at the first free table that fits (TableIndex, like seatAllGuests())
+ *      - ORDER:     the party orders one dish per person through RUHungry.order()
+ *      - DEPARTURE: the party leaves, the table is released and the waiting line moves up
+ *
+ * The waiting line is first come, first served: nobody is seated ahead of the party at the
+ * front of the line, and nobody is asked to leave to make room (unlike seatAllGuests(), which
+ * has no notion of time). Parties bigger than every table are turned away on arrival.
+ *
+ * To run: java -cp bin restaurant.RestaurantSimulator menu.in stock.in tables1.in 100000 sim.out
+ */
+
+public class RestaurantSimulator {
+
+    // Event types
+    private static final int ARRIVAL   = 0;
+    private static final int SEATING   = 1;
+    private static final int ORDER     = 2;
+    private static final int DEPARTURE = 3;
+
+    /*
+     * A party moving through the simulation
+     */
+    private static class Guest {
+        private Party party;
+        private String dishName;     // dish the party orders
+        private double arrivalTime;
+        private double orderDelay;   // time between sitting down and ordering
+        private double diningTime;   // time between ordering and leaving
+        private Guest next;          // next guest in the waiting line
+    }
+
+    /*
+     * A timestamped event in the heap
+     */
+    private static class Event implements Comparable<Event> {
+        private double time;
+        private long sequence;       // order the event was scheduled in, breaks ties
+        private int type;
+        private Guest guest;
+
+        public int compareTo(Event other) {
+            int byTime = Double.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private RUHungry restaurant;
+    private TableIndex tableIndex;
+    private int largestTable;
+    private PriorityQueue<Event> events;
+    private long scheduled;          // number of events scheduled so far
+    private long processed;          // number of events handled so far
+    private double now;              // simulation clock
+
+    // Waiting line: linked list of guests in arrival order
+    private Guest waitingFront;
+    private Guest waitingBack;
+    private int waitingSize;
+    private int longestLine;
+
+    // Statistics
+    private double[] waitTimes;      // wait of every seated party, in seating order
+    private int seated;
+    private int turnedAway;
+
+    /*
+     * Constructor
+     * @param restaurant a restaurant with its menu, stock (with prices) and tables already loaded
+     */
+    public RestaurantSimulator(RUHungry restaurant) {
+        if (restaurant.getTableSeats() == null) {
+            throw new IllegalArgumentException("The restaurant's tables have not been created");
+        }
+        this.restaurant = restaurant;
+        this.tableIndex = new TableIndex(restaurant.getTableSeats());
+        for (int seats : restaurant.getTableSeats()) {
+            largestTable = Math.max(largestTable, seats);
+        }
+        this.events = new PriorityQueue<Event>();
+        this.waitTimes = new double[1024];
+    }
+
+    /**
+     * Schedules a party's arrival.
+     *
+     * @param arrivalTime - when the party arrives
+     * @param party - the party
+     * @param dishName - the dish the party orders (one per person)
+     * @param orderDelay - time between sitting down and ordering
+     * @param diningTime - time between ordering and leaving
+     */
+
+    public void scheduleArrival(double arrivalTime, Party party, String dishName, double orderDelay, double diningTime) {
+        if (arrivalTime < now) {
+            throw new IllegalArgumentException("Arrival at " + arrivalTime + " is before the current time " + now);
+        }
+        Guest guest = new Guest();
+        guest.party = party;
+        guest.dishName = dishName;
+        guest.arrivalTime = arrivalTime;
+        guest.orderDelay = orderDelay;
+        guest.diningTime = diningTime;
+        schedule(arrivalTime, ARRIVAL, guest);
+    }
+
+    /**
+     * Processes events in time order until none are left.
+     */
+
+    public void run() {
+        run(Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Processes events in time order up to (and including) the given time.
+     *
+     * @param endTime - time to stop at
+     */
+
+    public void run(double endTime) {
+        while (!events.isEmpty() && events.peek().time <= endTime) {
+            Event event = events.poll();
+            now = event.time;
+            processed++;
+            Guest guest = event.guest;
+            switch (event.type) {
+                case ARRIVAL:
+                    arrive(guest);
+                    break;
+                case SEATING:
+                    seat(guest);
+                    break;
+                case ORDER:
+                    restaurant.order(guest.dishName, guest.party.getNumberOfPeople());
+                    schedule(now + guest.diningTime, DEPARTURE, guest);
+                    break;
+                case DEPARTURE:
+                    int table = guest.party.getTableIndex();
+                    restaurant.releaseTable(table);
+                    tableIndex.release(table);
+                    seatWaitingGuests();
+                    break;
+            }
+        }
+    }
+
+    private void arrive(Guest guest) {
+        if (guest.party.getNumberOfPeople() > largestTable) {
+            turnedAway++;
+            return;
+        }
+        if (waitingBack == null) {
+            waitingFront = guest;
+        } else {
+            waitingBack.next = guest;
+        }
+        waitingBack = guest;
+        waitingSize++;
+        longestLine = Math.max(longestLine, waitingSize);
+        seatWaitingGuests();
+    }
+
+    /*
+     * Seats parties from the front of the waiting line while a fitting table is free
+     */
+    private void seatWaitingGuests() {
+        while (waitingFront != null) {
+            int table = tableIndex.firstFree(waitingFront.party.getNumberOfPeople());
+            if (table == -1) {
+                return;
+            }
+            Guest guest = waitingFront;
+            waitingFront = guest.next;
+            if (waitingFront == null) {
+                waitingBack = null;
+            }
+            guest.next = null;
+            waitingSize--;
+            tableIndex.occupy(table);
+            guest.party.setTableIndex(table);
+            schedule(now, SEATING, guest);
+        }
+    }
+
+    private void seat(Guest guest) {
+        restaurant.seatParty(guest.party.getTableIndex(), guest.party);
+        if (seated == waitTimes.length) {
+            waitTimes = Arrays.copyOf(waitTimes, 2 * seated);
+        }
+        waitTimes[seated++] = now - guest.arrivalTime;
+        schedule(now + guest.orderDelay, ORDER, guest);
+    }
+
+    private void schedule(double time, int type, Guest guest) {
+        Event event = new Event();
+        event.time = time;
+        event.sequence = scheduled++;
+        event.type = type;
+        event.guest = guest;
+        events.add(event);
+    }
+
+    /**
+     * Returns a wait time percentile (nearest rank) over every party seated so far.
+     *
+     * @param percentile - between 0 and 100
+     * @return the wait time, 0 if nobody has been seated
+     */
+
+    public double waitTimePercentile(double percentile) {
+        if (seated == 0) {
+            return 0;
+        }
+        double[] sorted = Arrays.copyOf(waitTimes, seated);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * seated);
+        return sorted[Math.max(0, Math.min(seated - 1, rank - 1))];
+    }
+
+    // Getter methods
+    public double getTime() { return now; }
+    public long getEventsProcessed() { return processed; }
+    public int getPartiesSeated() { return seated; }
+    public int getPartiesTurnedAway() { return turnedAway; }
+    public int getPartiesWaiting() { return waitingSize; }
+    public int getLongestLine() { return longestLine; }
+
+    /**
+     * Prints event counts, wait time percentiles and the restaurant's profit.
+     */
+
+    public void printReport() {
+        StdOut.println("Simulated time: " + ((Math.round(now * 100.0)) / 100.0));
+        StdOut.println("Events processed: " + processed);
+        StdOut.println("Parties seated: " + seated + ", turned away: " + turnedAway + ", still waiting: " + waitingSize);
+        StdOut.println("Longest waiting line: " + longestLine);
+        StdOut.println("Wait time p50: " + ((Math.round(waitTimePercentile(50) * 100.0)) / 100.0)
+            + " p90: " + ((Math.round(waitTimePercentile(90) * 100.0)) / 100.0)
+            + " p99: " + ((Math.round(waitTimePercentile(99) * 100.0)) / 100.0)
+            + " max: " + ((Math.round(waitTimePercentile(100) * 100.0)) / 100.0));
+        StdOut.println("Total profit: $" + ((Math.round(restaurant.profit() * 100.0)) / 100.0));
+    }
+
+    /**
+     * Simulates an evening with randomly generated parties.
+     *
+     * args[0] menu file, args[1] stock file, args[2] tables file, args[3] number of parties,
+     * args[4] (optional) output file
+     *
+     * Parties of 1 to 8 people arrive on average once a minute, order a random dish after
+     * 5 to 15 minutes and leave 30 to 90 minutes later.
+     */
+    public static void main(String[] args) {
+        RUHungry rh = new RUHungry();
+        rh.menu(args[0]);
+        rh.createStockHashTable(args[1]);
+        rh.updatePriceAndProfit();
+        rh.createTables(args[2]);
+        int numberOfParties = Integer.parseInt(args[3]);
+
+        String[] dishNames = rh.availabilitySnapshot().keySet().toArray(new String[0]);
+        Random random = new Random(42);
+        RestaurantSimulator simulator = new RestaurantSimulator(rh);
+        double time = 0;
+        for (int i = 0; i < numberOfParties; i++) {
+            time += -Math.log(1 - random.nextDouble()); // exponential inter-arrival times, mean 1
+            Party party = new Party(1 + random.nextInt(8), "Party" + i, -1);
+            simulator.scheduleArrival(time, party, dishNames[random.nextInt(dishNames.length)],
+                5 + 10 * random.nextDouble(), 30 + 60 * random.nextDouble());
+        }
+
+        long start = System.nanoTime();
+        simulator.run();
+        long elapsed = System.nanoTime() - start;
+
+        if (args.length > 4) {
+            StdOut.setFile(args[4]);
+        }
+        simulator.printReport();
+        StdOut.println("Wall time: " + (elapsed / 1000000) + " ms");
+    }
+}
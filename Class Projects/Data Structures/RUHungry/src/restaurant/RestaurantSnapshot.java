@@ -0,0 +1,377 @@
+package restaurant;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * This file is a binary snapshot of a whole restaurant: menu (with prices and profits),
+ * stock table, tables and parties, and the transaction list. Restoring a snapshot takes
+ * the place of re-reading menu.in, stock.in and tables*.in and re-running updatePriceAndProfit().
+ *
+ * write() streams the state out to fileName.tmp, syncs it and renames it over fileName, so a
+ * crash while writing leaves the previous snapshot intact; read() maps the file into memory and
+ * decodes it straight from the mapped buffer. See RUHungry.saveSnapshot() and RUHungry.restoreSnapshot().
+ *
+ * File layout (big endian, strings are a length in bytes then UTF-8 bytes, length -1 for null):
+ *      - header: MAGIC (int), VERSION (int)
+ *      - menu: number of categories (int, -1 if no menu is loaded), then per category its name
+ *        and number of dishes (int), then per dish (in menuVar order) its name, number of
+ *        ingredient IDs (int), the IDs (int), price (double) and profit (double)
+ *      - stock: stockVarSize (int, -1 if no stock is loaded), load factor (double), then per
+ *        bucket the chain length (int) and per StockNode (front first) the ID (int), name,
+ *        stock level (int), cost (double), reorder threshold (int) and whether findStockNode(String)
+ *        finds this node for its name (boolean)
+ *      - tables: number of tables (int, -1 if there are none), then per table its seats (int)
+ *        and the party sitting there; then the number of parties that left (int, -1 if
+ *        leftQueueVar is null) and those parties in order. A party is a present flag (boolean)
+ *        followed by its name, number of people (int) and table index (int)
+ *      - transactions: number of transactions (int), then per transaction its type, item,
+ *        amount (int), profit (double) and success (boolean)
+ *      - analytics intervals: interval length (long), number of intervals (int), then per interval
+ *        (oldest first) its start (long), successes (int), failures (int), amount (long) and profit (double)
+ *      - CRC32 of everything before it (int)
+ *
+ * VERSION is bumped whenever the layout changes; read() rejects other versions.
+ */
+
+public class RestaurantSnapshot {
+
+    public static final int MAGIC   = 0x52554853; // "RUHS"
+    public static final int VERSION = 2;
+
+    // Restored state, in the shape RUHungry keeps it
+    private String[] categoryVar;   // null if no menu was loaded
+    private MenuNode[] menuVar;
+    private StockNode[] stockVar;   // null if no stock was loaded
+    private double stockLoadFactor;
+    private List<StockNode> nameIndexedStock; // the nodes the ingredient name index pointed at
+    private int[] tableSeats;       // null if the restaurant had no tables
+    private Party[] tables;
+    private Queue<Party> leftQueue; // null if no party had left
+    private List<TransactionData> transactions;
+    private long intervalLength;
+    private LinkedHashMap<Long, TransactionAnalytics.Totals> intervals; // interval start -> totals, oldest first
+
+    private RestaurantSnapshot() { }
+
+    /**
+     * Writes the state of a restaurant to a snapshot file, replacing the file only once the
+     * new snapshot is completely on disk.
+     *
+     * @param rh - the restaurant
+     * @param fileName - the snapshot file
+     */
+
+    public static void write(RUHungry rh, String fileName) throws IOException {
+        Path target = Paths.get(fileName);
+        Path temp = Paths.get(fileName + ".tmp");
+        CRC32 crc = new CRC32();
+        FileOutputStream fileOut = new FileOutputStream(temp.toFile());
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(fileOut, crc), 1 << 16));
+        boolean written = false;
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            String[] categoryVar = rh.getCategoryArray();
+            MenuNode[] menuVar = rh.getMenu();
+            int categories = categoryVar == null ? 0 : categoryVar.length;
+            out.writeInt(categoryVar == null ? -1 : categories);
+            for (int i = 0; i < categories; i++) {
+                writeString(out, categoryVar[i]);
+                int dishes = 0;
+                for (MenuNode ptr = menuVar[i]; ptr != null; ptr = ptr.getNextMenuNode()) {
+                    dishes++;
+                }
+                out.writeInt(dishes);
+                for (MenuNode ptr = menuVar[i]; ptr != null; ptr = ptr.getNextMenuNode()) {
+                    Dish dish = ptr.getDish();
+                    writeString(out, dish.getName());
+                    out.writeInt(dish.getStockID().length);
+                    for (int stockID : dish.getStockID()) {
+                        out.writeInt(stockID);
+                    }
+                    out.writeDouble(dish.getPriceOfDish());
+                    out.writeDouble(dish.getProfit());
+                }
+            }
+
+            StockNode[] stockVar = rh.getStockVar();
+            out.writeInt(stockVar == null ? -1 : stockVar.length);
+            out.writeDouble(rh.getStockLoadFactor());
+            if (stockVar != null) {
+                for (StockNode head : stockVar) {
+                    int length = 0;
+                    for (StockNode ptr = head; ptr != null; ptr = ptr.getNextStockNode()) {
+                        length++;
+                    }
+                    out.writeInt(length);
+                    for (StockNode ptr = head; ptr != null; ptr = ptr.getNextStockNode()) {
+                        Ingredient ingredient = ptr.getIngredient();
+                        out.writeInt(ingredient.getID());
+                        writeString(out, ingredient.getName());
+                        out.writeInt(ingredient.getStockLevel());
+                        out.writeDouble(ingredient.getCost());
+                        out.writeInt(ingredient.getReorderThreshold());
+                        out.writeBoolean(rh.isNameIndexed(ptr));
+                    }
+                }
+            }
+
+            int[] tableSeats = rh.getTableSeats();
+            Party[] tables = rh.getTables();
+            out.writeInt(tableSeats == null ? -1 : tableSeats.length);
+            if (tableSeats != null) {
+                for (int t = 0; t < tableSeats.length; t++) {
+                    out.writeInt(tableSeats[t]);
+                    writeParty(out, tables == null ? null : tables[t]);
+                }
+            }
+            Queue<Party> leftQueue = rh.getLeftQueueVar();
+            out.writeInt(leftQueue == null ? -1 : leftQueue.size());
+            if (leftQueue != null) {
+                for (Party party : leftQueue) {
+                    writeParty(out, party);
+                }
+            }
+
+            int count = 0;
+            for (TransactionNode ptr = rh.getFrontTransactionNode(); ptr != null; ptr = ptr.getNext()) {
+                count++;
+            }
+            out.writeInt(count);
+            for (TransactionNode ptr = rh.getFrontTransactionNode(); ptr != null; ptr = ptr.getNext()) {
+                TransactionData data = ptr.getData();
+                writeString(out, data.getType());
+                writeString(out, data.getItem());
+                out.writeInt(data.getAmount());
+                out.writeDouble(data.getProfit());
+                out.writeBoolean(data.getSuccess());
+            }
+
+            TransactionAnalytics analytics = rh.getAnalytics();
+            List<Long> starts = analytics.intervals();
+            out.writeLong(analytics.getIntervalLength());
+            out.writeInt(starts.size());
+            for (long start : starts) {
+                TransactionAnalytics.Totals totals = analytics.byInterval(start);
+                out.writeLong(start);
+                out.writeInt(totals.getSuccesses());
+                out.writeInt(totals.getFailures());
+                out.writeLong(totals.getAmount());
+                out.writeDouble(totals.getProfit());
+            }
+
+            out.flush();
+            new DataOutputStream(fileOut).writeInt((int) crc.getValue()); // not part of the checksum
+            fileOut.getFD().sync();
+            written = true;
+        } finally {
+            out.close();
+            if (!written) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps a snapshot file into memory and decodes it.
+     *
+     * @param fileName - the snapshot file
+     * @return the restored state, installed by RUHungry.restoreSnapshot()
+     */
+
+    public static RestaurantSnapshot read(String fileName) throws IOException {
+        MappedByteBuffer buffer;
+        FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // stays valid after the channel is closed
+        } finally {
+            channel.close();
+        }
+        if (buffer.limit() < 12 || buffer.getInt(0) != MAGIC) {
+            throw new IOException(fileName + " is not a restaurant snapshot");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(fileName + " has snapshot version " + buffer.getInt(4) + ", expected " + VERSION);
+        }
+        int end = buffer.limit() - 4;
+        CRC32 crc = new CRC32();
+        ByteBuffer checked = buffer.duplicate();
+        checked.limit(end);
+        crc.update(checked);
+        if ((int) crc.getValue() != buffer.getInt(end)) {
+            throw new IOException(fileName + " is corrupt (checksum mismatch)");
+        }
+        buffer.position(8);
+
+        RestaurantSnapshot snapshot = new RestaurantSnapshot();
+        int categories = buffer.getInt();
+        if (categories >= 0) {
+            snapshot.categoryVar = new String[categories];
+            snapshot.menuVar = new MenuNode[categories];
+        }
+        for (int i = 0; i < categories; i++) {
+            String category = readString(buffer);
+            snapshot.categoryVar[i] = category;
+            MenuNode tail = null;
+            int dishes = buffer.getInt();
+            for (int d = 0; d < dishes; d++) {
+                String name = readString(buffer);
+                int[] stockIDs = new int[buffer.getInt()];
+                for (int k = 0; k < stockIDs.length; k++) {
+                    stockIDs[k] = buffer.getInt();
+                }
+                Dish dish = new Dish(category, name, stockIDs);
+                dish.setPriceOfDish(buffer.getDouble());
+                dish.setProfit(buffer.getDouble());
+                MenuNode node = new MenuNode(dish, null);
+                if (tail == null) {
+                    snapshot.menuVar[i] = node;
+                } else {
+                    tail.setNextMenuNode(node);
+                }
+                tail = node;
+            }
+        }
+
+        int buckets = buffer.getInt();
+        snapshot.stockLoadFactor = buffer.getDouble();
+        if (buckets >= 0) {
+            snapshot.stockVar = new StockNode[buckets];
+        }
+        snapshot.nameIndexedStock = new ArrayList<StockNode>();
+        for (int b = 0; b < buckets; b++) {
+            StockNode tail = null;
+            int length = buffer.getInt();
+            for (int n = 0; n < length; n++) {
+                int id = buffer.getInt();
+                String name = readString(buffer);
+                int stockLevel = buffer.getInt();
+                Ingredient ingredient = new Ingredient(id, name, stockLevel, buffer.getDouble());
+                ingredient.setReorderThreshold(buffer.getInt());
+                StockNode node = new StockNode(ingredient, null);
+                if (buffer.get() != 0) {
+                    snapshot.nameIndexedStock.add(node);
+                }
+                if (tail == null) {
+                    snapshot.stockVar[b] = node;
+                } else {
+                    tail.setNextStockNode(node);
+                }
+                tail = node;
+            }
+        }
+
+        int numberOfTables = buffer.getInt();
+        if (numberOfTables >= 0) {
+            snapshot.tableSeats = new int[numberOfTables];
+            snapshot.tables = new Party[numberOfTables];
+            for (int t = 0; t < numberOfTables; t++) {
+                snapshot.tableSeats[t] = buffer.getInt();
+                snapshot.tables[t] = readParty(buffer);
+            }
+        }
+        int left = buffer.getInt();
+        if (left >= 0) {
+            snapshot.leftQueue = new Queue<Party>();
+            for (int p = 0; p < left; p++) {
+                snapshot.leftQueue.enqueue(readParty(buffer));
+            }
+        }
+
+        int count = buffer.getInt();
+        snapshot.transactions = new ArrayList<TransactionData>(count);
+        for (int i = 0; i < count; i++) {
+            String type = readString(buffer);
+            String item = readString(buffer);
+            int amount = buffer.getInt();
+            double profit = buffer.getDouble();
+            snapshot.transactions.add(new TransactionData(type, item, amount, profit, buffer.get() != 0));
+        }
+
+        snapshot.intervalLength = buffer.getLong();
+        int intervals = buffer.getInt();
+        snapshot.intervals = new LinkedHashMap<Long, TransactionAnalytics.Totals>();
+        for (int i = 0; i < intervals; i++) {
+            long start = buffer.getLong();
+            int successes = buffer.getInt();
+            int failures = buffer.getInt();
+            long amount = buffer.getLong();
+            snapshot.intervals.put(start, new TransactionAnalytics.Totals(successes, failures, amount, buffer.getDouble()));
+        }
+        if (buffer.position() != end) {
+            throw new IOException(fileName + " has " + (end - buffer.position()) + " unexpected bytes");
+        }
+        return snapshot;
+    }
+
+    // Getter methods for RUHungry.restoreSnapshot()
+    public String[] getCategoryArray() { return categoryVar; }
+    public MenuNode[] getMenu() { return menuVar; }
+    public StockNode[] getStockVar() { return stockVar; }
+    public double getStockLoadFactor() { return stockLoadFactor; }
+    public List<StockNode> getNameIndexedStock() { return nameIndexedStock; }
+    public int[] getTableSeats() { return tableSeats; }
+    public Party[] getTables() { return tables; }
+    public Queue<Party> getLeftQueue() { return leftQueue; }
+    public List<TransactionData> getTransactions() { return transactions; }
+    public long getIntervalLength() { return intervalLength; }
+    public Map<Long, TransactionAnalytics.Totals> getIntervals() { return intervals; }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeParty(DataOutputStream out, Party party) throws IOException {
+        out.writeBoolean(party != null);
+        if (party != null) {
+            writeString(out, party.getName());
+            out.writeInt(party.getNumberOfPeople());
+            out.writeInt(party.getTableIndex());
+        }
+    }
+
+    private static Party readParty(ByteBuffer buffer) {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        String name = readString(buffer);
+        int numberOfPeople = buffer.getInt();
+        return new Party(numberOfPeople, name, buffer.getInt());
+    }
+}
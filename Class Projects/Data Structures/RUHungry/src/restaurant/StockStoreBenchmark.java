@@ -0,0 +1,77 @@
+package restaurant;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the stockVar hashtable (StockNode chains) with PrimitiveStockStore on a synthetic
+ * ingredient catalog: heap used by each, and time for random lookups by ingredient ID.
+ *
+ * args[0] (optional) number of ingredients, default 1000000
+ * args[1] (optional) number of lookups per round, default 10000000
+ *
+ * To run: java -Xmx2g -cp bin restaurant.StockStoreBenchmark 1000000
+ */
+
+public class StockStoreBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int ingredients = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 10000000;
+
+        File stockFile = File.createTempFile("stock", ".in");
+        stockFile.deleteOnExit();
+        SyntheticRestaurant.writeStock(stockFile, ingredients, 50, 42);
+
+        Random random = new Random(7);
+        int[] queries = new int[lookups];
+        for (int i = 0; i < lookups; i++) {
+            queries[i] = 100 + random.nextInt(ingredients);
+        }
+
+        long before = usedHeap();
+        RUHungry rh = new RUHungry();
+        rh.setStockLoadFactor(0.75); // the synthetic stock file declares 10 buckets
+        rh.createStockHashTable(stockFile.getPath());
+        long chainedHeap = usedHeap() - before;
+
+        before = usedHeap();
+        PrimitiveStockStore store = PrimitiveStockStore.load(stockFile.getPath());
+        long primitiveHeap = usedHeap() - before;
+
+        StdOut.println("Ingredients: " + ingredients + ", lookups per round: " + lookups);
+        StdOut.println("Heap, StockNode chains:      " + (chainedHeap / (1024 * 1024)) + " MB");
+        StdOut.println("Heap, PrimitiveStockStore:   " + (primitiveHeap / (1024 * 1024)) + " MB");
+
+        for (int round = 1; round <= 5; round++) {
+            long start = System.nanoTime();
+            long total = 0;
+            for (int id : queries) {
+                total += rh.findStockNode(id).getIngredient().getStockLevel();
+            }
+            long chained = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long check = 0;
+            for (int id : queries) {
+                check += store.getStockLevel(store.find(id));
+            }
+            long primitive = System.nanoTime() - start;
+
+            if (total != check) {
+                throw new IllegalStateException("Stores disagree: " + total + " != " + check);
+            }
+            StdOut.println("Round " + round + ": StockNode chains " + (chained / lookups) + " ns/lookup, "
+                + "PrimitiveStockStore " + (primitive / lookups) + " ns/lookup");
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,101 @@
+package restaurant;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * This file generates synthetic RUHungry input files (menu.in, stock.in and order*.in
+ * formats) of any size, for the benchmarks.
+ *
+ * Ingredients have IDs 100, 101, ... and are named "Ingredient i"; dishes are named
+ * "Dish i" and are spread round-robin over categories named "Category c". The same
+ * seed always produces the same files.
+ */
+
+public class SyntheticRestaurant {
+
+    private SyntheticRestaurant() { }
+
+    /**
+     * Writes a stock file.
+     *
+     * @param file - the file to write
+     * @param ingredients - number of ingredients
+     * @param stockLevel - stock level of every ingredient
+     * @param seed - seed for the ingredient costs
+     */
+
+    public static void writeStock(File file, int ingredients, int stockLevel, long seed) throws IOException {
+        Random random = new Random(seed);
+        BufferedWriter out = new BufferedWriter(new FileWriter(file));
+        try {
+            out.write("10\n");
+            for (int i = 0; i < ingredients; i++) {
+                out.write((100 + i) + " Ingredient " + i + "\n");
+                out.write((1 + random.nextInt(999)) / 100.0 + " " + stockLevel + "\n");
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes a menu file.
+     *
+     * @param file - the file to write
+     * @param dishes - number of dishes
+     * @param categories - number of categories the dishes are spread over
+     * @param ingredients - number of ingredients in the matching stock file
+     * @param ingredientsPerDish - number of ingredients of every dish
+     * @param seed - seed for the ingredients picked for each dish
+     */
+
+    public static void writeMenu(File file, int dishes, int categories, int ingredients, int ingredientsPerDish, long seed) throws IOException {
+        Random random = new Random(seed);
+        BufferedWriter out = new BufferedWriter(new FileWriter(file));
+        try {
+            out.write(categories + "\n");
+            for (int c = 0; c < categories; c++) {
+                out.write("Category " + c + "\n");
+                int dishesInCategory = dishes / categories + (c < dishes % categories ? 1 : 0);
+                out.write(dishesInCategory + "\n");
+                for (int d = 0; d < dishesInCategory; d++) {
+                    out.write("Dish " + (d * categories + c) + "\n");
+                    out.write(Integer.toString(ingredientsPerDish));
+                    for (int k = 0; k < ingredientsPerDish; k++) {
+                        out.write(" " + (100 + random.nextInt(ingredients)));
+                    }
+                    out.write("\n");
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes an order file with uniformly random dishes.
+     *
+     * @param file - the file to write
+     * @param orders - number of orders
+     * @param dishes - number of dishes in the matching menu file
+     * @param maxQuantity - largest quantity ordered
+     * @param seed - seed for the orders
+     */
+
+    public static void writeOrders(File file, int orders, int dishes, int maxQuantity, long seed) throws IOException {
+        Random random = new Random(seed);
+        BufferedWriter out = new BufferedWriter(new FileWriter(file));
+        try {
+            out.write(orders + "\n");
+            for (int i = 0; i < orders; i++) {
+                out.write((1 + random.nextInt(maxQuantity)) + " Dish " + random.nextInt(dishes) + "\n");
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
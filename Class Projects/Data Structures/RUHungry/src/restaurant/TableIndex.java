@@ -0,0 +1,169 @@
+package restaurant;
+
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * This file indexes the restaurant's tables by seat count so seatAllGuests() can find a
+ * table for a party in logarithmic time instead of scanning the tableSeats array.
+ *
+ * Two structures are kept over the same tables:
+ *      - segment trees holding the largest seat count in every range of table indexes, one
+ *        over free tables only (occupied tables count as 0 seats) and one over all tables.
+ *        They answer "first table (lowest index) with at least k seats".
+ *      - TreeMaps from seat count to the indexes of the tables with that many seats, one over
+ *        free tables and one over all tables. They answer "smallest table with at least k seats".
+ *
+ * Occupying or releasing a table is O(log n).
+ */
+
+public class TableIndex {
+
+    private int[] tableSeats;   // number of seats at each table
+    private boolean[] occupied; // true if a party is sitting at the table
+    private int leaves;         // number of leaves in the segment trees (power of two)
+    private int[] freeMax;      // segment tree: largest seat count among free tables in a range
+    private int[] seatMax;      // segment tree: largest seat count among all tables in a range
+    private TreeMap<Integer, TreeSet<Integer>> freeBySeats; // seat count -> free table indexes
+    private TreeMap<Integer, TreeSet<Integer>> allBySeats;  // seat count -> all table indexes
+
+    /*
+     * Constructor, every table starts free
+     * @param tableSeats the number of seats at each table
+     */
+    public TableIndex(int[] tableSeats) {
+        this.tableSeats = tableSeats;
+        this.occupied = new boolean[tableSeats.length];
+        this.leaves = 1;
+        while (leaves < tableSeats.length) {
+            leaves *= 2;
+        }
+        this.freeMax = new int[2 * leaves];
+        this.seatMax = new int[2 * leaves];
+        this.freeBySeats = new TreeMap<Integer, TreeSet<Integer>>();
+        this.allBySeats = new TreeMap<Integer, TreeSet<Integer>>();
+        for (int t = 0; t < tableSeats.length; t++) {
+            freeMax[leaves + t] = tableSeats[t];
+            seatMax[leaves + t] = tableSeats[t];
+            add(freeBySeats, t);
+            add(allBySeats, t);
+        }
+        for (int node = leaves - 1; node >= 1; node--) {
+            freeMax[node] = Math.max(freeMax[2 * node], freeMax[2 * node + 1]);
+            seatMax[node] = Math.max(seatMax[2 * node], seatMax[2 * node + 1]);
+        }
+    }
+
+    /**
+     * @param partySize - number of people in the party
+     * @return the lowest index of a free table with at least partySize seats, -1 if there is none
+     */
+
+    public int firstFree(int partySize) {
+        return first(freeMax, partySize);
+    }
+
+    /**
+     * @param partySize - number of people in the party
+     * @return the lowest index of any table (free or not) with at least partySize seats, -1 if there is none
+     */
+
+    public int firstFit(int partySize) {
+        return first(seatMax, partySize);
+    }
+
+    /**
+     * @param partySize - number of people in the party
+     * @return the free table with the fewest seats that still fits the party (lowest index
+     *         among equally sized tables), -1 if there is none
+     */
+
+    public int smallestFree(int partySize) {
+        return smallest(freeBySeats, partySize);
+    }
+
+    /**
+     * @param partySize - number of people in the party
+     * @return the table (free or not) with the fewest seats that still fits the party (lowest
+     *         index among equally sized tables), -1 if there is none
+     */
+
+    public int smallestFit(int partySize) {
+        return smallest(allBySeats, partySize);
+    }
+
+    /**
+     * Marks a table as taken by a party.
+     *
+     * @param table - index of the table
+     */
+
+    public void occupy(int table) {
+        if (occupied[table]) {
+            return;
+        }
+        occupied[table] = true;
+        setFreeSeats(table, 0);
+        TreeSet<Integer> tables = freeBySeats.get(tableSeats[table]);
+        tables.remove(table);
+        if (tables.isEmpty()) {
+            freeBySeats.remove(tableSeats[table]);
+        }
+    }
+
+    /**
+     * Marks a table as free again.
+     *
+     * @param table - index of the table
+     */
+
+    public void release(int table) {
+        if (!occupied[table]) {
+            return;
+        }
+        occupied[table] = false;
+        setFreeSeats(table, tableSeats[table]);
+        add(freeBySeats, table);
+    }
+
+    public boolean isOccupied(int table) { return occupied[table]; }
+
+    /*
+     * Updates the free seat count of a table in the free segment tree
+     */
+    private void setFreeSeats(int table, int seats) {
+        int node = leaves + table;
+        freeMax[node] = seats;
+        for (node /= 2; node >= 1; node /= 2) {
+            freeMax[node] = Math.max(freeMax[2 * node], freeMax[2 * node + 1]);
+        }
+    }
+
+    /*
+     * Descends the segment tree to the leftmost leaf holding at least partySize seats
+     */
+    private int first(int[] tree, int partySize) {
+        if (tree.length < 2 || tree[1] < partySize) {
+            return -1;
+        }
+        int node = 1;
+        while (node < leaves) {
+            node = tree[2 * node] >= partySize ? 2 * node : 2 * node + 1;
+        }
+        return node - leaves;
+    }
+
+    private int smallest(TreeMap<Integer, TreeSet<Integer>> bySeats, int partySize) {
+        Integer seats = bySeats.ceilingKey(partySize);
+        return seats == null ? -1 : bySeats.get(seats).first();
+    }
+
+    private void add(TreeMap<Integer, TreeSet<Integer>> bySeats, int table) {
+        TreeSet<Integer> tables = bySeats.get(tableSeats[table]);
+        if (tables == null) {
+            tables = new TreeSet<Integer>();
+            bySeats.put(tableSeats[table], tables);
+        }
+        tables.add(table);
+    }
+}
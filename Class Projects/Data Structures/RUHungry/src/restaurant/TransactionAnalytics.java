@@ -0,0 +1,292 @@
+package restaurant;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * This file keeps running aggregates of the restaurant's transactions, so questions such as
+ * "profit of a dish" or "failure rate in an hour" are answered without walking the
+ * transaction list.
+ *
+ * RUHungry calls record() for every transaction it adds. Each transaction is added to:
+ *      - the overall totals
+ *      - the totals of its type (order, donation, restock)
+ *      - the totals of its item (dish or ingredient name, ignoring case) within its type
+ *      - the totals of the interval it was recorded in
+ *
+ * Intervals are intervalLength units long and start at multiples of intervalLength, read
+ * from a clock (System.currentTimeMillis() and one hour by default; a simulation can pass
+ * its own clock). Transactions restored from a journal or a snapshot were not recorded now,
+ * so they go through recordUntimed() and only count towards the totals that do not depend on
+ * time; a snapshot brings its interval totals back with restoreInterval(). Every query is a hash lookup and returns a copy of the totals, except
+ * the overall...() accessors, which read the overall totals without allocating.
+ */
+
+public class TransactionAnalytics {
+
+    public static final long DEFAULT_INTERVAL_LENGTH = 60 * 60 * 1000; // one hour in milliseconds
+
+    /**
+     * Number of successful and unsuccessful transactions, the amount they moved and the
+     * profit of the successful ones.
+     */
+    public static class Totals {
+        private int successes;
+        private int failures;
+        private long amount;   // quantity ordered / donated / restocked by successful transactions
+        private double profit; // sum of the profits of the successful transactions
+
+        public Totals() { }
+
+        public Totals(int successes, int failures, long amount, double profit) {
+            this.successes = successes;
+            this.failures = failures;
+            this.amount = amount;
+            this.profit = profit;
+        }
+
+        private void add(TransactionData data) {
+            if (data.getSuccess()) {
+                successes++;
+                amount += data.getAmount();
+                profit += data.getProfit();
+            } else {
+                failures++;
+            }
+        }
+
+        private Totals copy() {
+            Totals copy = new Totals();
+            copy.successes = successes;
+            copy.failures = failures;
+            copy.amount = amount;
+            copy.profit = profit;
+            return copy;
+        }
+
+        public int getSuccesses() { return successes; }
+        public int getFailures() { return failures; }
+        public int getCount() { return successes + failures; }
+        public long getAmount() { return amount; }
+        public double getProfit() { return profit; }
+        public double getFailureRate() { return getCount() == 0 ? 0 : (double) failures / getCount(); }
+
+        public String toString() {
+            return "successes=" + successes + ", failures=" + failures + ", amount=" + amount
+                + ", profit=" + ((Math.round(profit * 100.0)) / 100.0);
+        }
+    }
+
+    /*
+     * Totals of one transaction type and of each item within it
+     */
+    private static class TypeTotals {
+        private Totals totals = new Totals();
+        private HashMap<String, Totals> items = new HashMap<String, Totals>(); // lower case item name -> totals
+    }
+
+    private Totals overall;
+    private HashMap<String, TypeTotals> types;     // transaction type -> its totals
+    private LinkedHashMap<Long, Totals> intervals; // interval start -> totals, oldest first
+    private LongSupplier clock;
+    private long intervalLength;
+
+    /*
+     * Default constructor, hour long intervals on the wall clock
+     */
+    public TransactionAnalytics() {
+        this(System::currentTimeMillis, DEFAULT_INTERVAL_LENGTH);
+    }
+
+    /*
+     * Constructor
+     * @param clock supplies the time each transaction is recorded at
+     * @param intervalLength length of an interval, in the clock's units
+     */
+    public TransactionAnalytics(LongSupplier clock, long intervalLength) {
+        if (intervalLength <= 0) {
+            throw new IllegalArgumentException("Interval length must be positive: " + intervalLength);
+        }
+        this.clock = clock;
+        this.intervalLength = intervalLength;
+        reset();
+    }
+
+    /**
+     * Adds a transaction to every aggregate it belongs to.
+     *
+     * @param data - the transaction
+     */
+
+    public synchronized void record(TransactionData data) {
+        recordUntimed(data);
+
+        long interval = Math.floorDiv(clock.getAsLong(), intervalLength) * intervalLength;
+        Totals intervalTotals = intervals.get(interval);
+        if (intervalTotals == null) {
+            intervalTotals = new Totals();
+            intervals.put(interval, intervalTotals);
+        }
+        intervalTotals.add(data);
+    }
+
+    /**
+     * Adds a transaction whose time is unknown (restored from a journal or a snapshot) to
+     * the overall, type and item totals, but to no interval.
+     *
+     * @param data - the transaction
+     */
+
+    public synchronized void recordUntimed(TransactionData data) {
+        overall.add(data);
+
+        TypeTotals typeTotals = types.get(data.getType());
+        if (typeTotals == null) {
+            typeTotals = new TypeTotals();
+            types.put(data.getType(), typeTotals);
+        }
+        typeTotals.totals.add(data);
+        String item = normalize(data.getItem());
+        Totals itemTotals = typeTotals.items.get(item);
+        if (itemTotals == null) {
+            itemTotals = new Totals();
+            typeTotals.items.put(item, itemTotals);
+        }
+        itemTotals.add(data);
+    }
+
+    /**
+     * Sets the totals of one interval, e.g. to the totals saved in a snapshot.
+     * Intervals must be restored oldest first to keep intervals() in order.
+     *
+     * @param start - start of the interval, a multiple of the interval length
+     * @param totals - the totals of the transactions recorded in that interval
+     */
+
+    public synchronized void restoreInterval(long start, Totals totals) {
+        intervals.put(start, totals.copy());
+    }
+
+    /**
+     * Forgets every transaction recorded so far (a new day).
+     */
+
+    public synchronized void reset() {
+        overall = new Totals();
+        types = new HashMap<String, TypeTotals>();
+        intervals = new LinkedHashMap<Long, Totals>();
+    }
+
+    /**
+     * @return the totals of every transaction
+     */
+
+    public synchronized Totals overall() {
+        return overall.copy();
+    }
+
+    // The overall totals one at a time, without copying them (RUHungry.profit() is called for every donation and restock)
+    public synchronized double overallProfit() { return overall.profit; }
+    public synchronized int overallSuccesses() { return overall.successes; }
+    public synchronized int overallFailures() { return overall.failures; }
+    public synchronized int overallCount() { return overall.getCount(); }
+
+    /**
+     * @param type - order, donation or restock
+     * @return the totals of the transactions of that type
+     */
+
+    public synchronized Totals byType(String type) {
+        TypeTotals typeTotals = types.get(type);
+        return typeTotals == null ? new Totals() : typeTotals.totals.copy();
+    }
+
+    /**
+     * @param type - order, donation or restock
+     * @param item - the dish or ingredient name, case is ignored
+     * @return the totals of the transactions of that type for that item
+     */
+
+    public synchronized Totals byItem(String type, String item) {
+        TypeTotals typeTotals = types.get(type);
+        if (typeTotals == null) {
+            return new Totals();
+        }
+        Totals itemTotals = typeTotals.items.get(normalize(item));
+        return itemTotals == null ? new Totals() : itemTotals.copy();
+    }
+
+    /**
+     * @param dishName - the dish name, case is ignored
+     * @return the totals of the orders of that dish
+     */
+
+    public synchronized Totals byDish(String dishName) {
+        return byItem("order", dishName);
+    }
+
+    /**
+     * @param time - any time within the interval, in the clock's units
+     * @return the totals of the transactions recorded in that interval
+     */
+
+    public synchronized Totals byInterval(long time) {
+        Totals intervalTotals = intervals.get(Math.floorDiv(time, intervalLength) * intervalLength);
+        return intervalTotals == null ? new Totals() : intervalTotals.copy();
+    }
+
+    /**
+     * @return the start of every interval with at least one transaction, oldest first
+     */
+
+    public synchronized List<Long> intervals() {
+        return new ArrayList<Long>(intervals.keySet());
+    }
+
+    /**
+     * @param type - order, donation or restock
+     * @return item name (lower case) -> totals, for every item of that type
+     */
+
+    public synchronized Map<String, Totals> itemsOfType(String type) {
+        Map<String, Totals> items = new HashMap<String, Totals>();
+        TypeTotals typeTotals = types.get(type);
+        if (typeTotals != null) {
+            for (Map.Entry<String, Totals> entry : typeTotals.items.entrySet()) {
+                items.put(entry.getKey(), entry.getValue().copy());
+            }
+        }
+        return items;
+    }
+
+    public synchronized long getIntervalLength() { return intervalLength; }
+
+    /*
+     * Changes the clock and interval length used for the transactions recorded from now on
+     */
+    public synchronized void setClock(LongSupplier clock, long intervalLength) {
+        if (intervalLength <= 0) {
+            throw new IllegalArgumentException("Interval length must be positive: " + intervalLength);
+        }
+        this.clock = clock;
+        this.intervalLength = intervalLength;
+    }
+
+    /*
+     * Folds every character the way equalsIgnoreCase() compares it, independent of the default locale
+     */
+    private static String normalize(String name) {
+        if (name == null) {
+            return null;
+        }
+        char[] folded = new char[name.length()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+        }
+        return new String(folded);
+    }
+}
@@ -0,0 +1,270 @@
+package restaurant;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * This file is an append-only binary journal of the restaurant's transactions.
+ *
+ * Every TransactionData recorded by RUHungry is appended as one record. Records are
+ * buffered in memory and written and synced to disk together once groupSize of them
+ * are pending (group commit), or when commit() / close() is called.
+ *
+ * File layout:
+ *      - header: MAGIC (int), VERSION (int)
+ *      - records: payload length (int), payload bytes, CRC32 of the payload (int)
+ *
+ * Payload of a record:
+ *      - kind (byte): TRANSACTION or RESET
+ *      - for TRANSACTION: type (UTF), item (UTF), amount (int), profit (double), success (boolean)
+ *
+ * A crash can leave a partially written record at the end of the file. read() stops at
+ * the first record that is cut short or fails its checksum, so everything committed
+ * before the crash is recovered. Opening the journal again truncates the file right after
+ * the last valid record, so records appended after the crash are not hidden behind it.
+ * A file shorter than the header (a crash before the header was committed) holds no
+ * records; it is read as empty and started over when opened.
+ */
+
+public class TransactionJournal {
+
+    public static final int MAGIC   = 0x5255484A; // "RUHJ"
+    public static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = 8; // MAGIC and VERSION
+
+    public static final int DEFAULT_GROUP_SIZE = 64;
+
+    // Record kinds
+    private static final byte TRANSACTION = 0;
+    private static final byte RESET       = 1; // the day's transactions were reset (resetFrontNode)
+
+    private FileOutputStream fileOut;   // underlying file, used to sync committed records to disk
+    private DataOutputStream out;       // buffered stream records are written to
+    private ByteArrayOutputStream payloadBytes;
+    private DataOutputStream payload;   // scratch stream used to build one record payload
+    private CRC32 crc;
+    private int groupSize;              // number of pending records that triggers a commit
+    private int pending;                // records written since the last commit
+
+    /*
+     * Opens (or creates) the journal file for appending, committing every DEFAULT_GROUP_SIZE records.
+     * @param fileName the journal file
+     */
+    public TransactionJournal(String fileName) throws IOException {
+        this(fileName, DEFAULT_GROUP_SIZE);
+    }
+
+    /*
+     * Opens (or creates) the journal file for appending, first cutting off any torn record left by a crash.
+     * @param fileName the journal file
+     * @param groupSize number of records buffered before they are written and synced together
+     */
+    public TransactionJournal(String fileName, int groupSize) throws IOException {
+        if (groupSize < 1) {
+            throw new IllegalArgumentException("Group size must be at least 1: " + groupSize);
+        }
+        File file = new File(fileName);
+        boolean isNew = !file.exists() || file.length() < HEADER_LENGTH;
+        if (!isNew) {
+            checkHeader(file);
+            long end = scan(file, null);
+            if (end < file.length()) {
+                FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+                try {
+                    channel.truncate(end);
+                    channel.force(true);
+                } finally {
+                    channel.close();
+                }
+            }
+        }
+        this.fileOut = new FileOutputStream(file, !isNew); // a torn header is truncated away
+        this.out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+        this.payloadBytes = new ByteArrayOutputStream(128);
+        this.payload = new DataOutputStream(payloadBytes);
+        this.crc = new CRC32();
+        this.groupSize = groupSize;
+        this.pending = 0;
+        if (isNew) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            commit();
+        }
+    }
+
+    /**
+     * Appends a transaction to the journal.
+     *
+     * @param data - the transaction to record
+     */
+
+    public void append(TransactionData data) throws IOException {
+        payloadBytes.reset();
+        payload.writeByte(TRANSACTION);
+        payload.writeUTF(data.getType());
+        payload.writeUTF(data.getItem());
+        payload.writeInt(data.getAmount());
+        payload.writeDouble(data.getProfit());
+        payload.writeBoolean(data.getSuccess());
+        writeRecord();
+    }
+
+    /**
+     * Appends a marker recording that the transactions were reset for a new day.
+     * Stock changes made before the marker still apply when the journal is replayed.
+     */
+
+    public void appendReset() throws IOException {
+        payloadBytes.reset();
+        payload.writeByte(RESET);
+        writeRecord();
+    }
+
+    /*
+     * Writes the payload as a record and commits once groupSize records are pending
+     */
+    private void writeRecord() throws IOException {
+        payload.flush();
+        crc.reset();
+        crc.update(payloadBytes.toByteArray(), 0, payloadBytes.size());
+        out.writeInt(payloadBytes.size());
+        payloadBytes.writeTo(out);
+        out.writeInt((int) crc.getValue());
+        pending++;
+        if (pending >= groupSize) {
+            commit();
+        }
+    }
+
+    /**
+     * Writes every buffered record to the file and forces it to disk.
+     */
+
+    public void commit() throws IOException {
+        out.flush();
+        fileOut.getFD().sync();
+        pending = 0;
+    }
+
+    /**
+     * Commits any pending records and closes the journal.
+     */
+
+    public void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            out.close();
+        }
+    }
+
+    public int getPendingRecords() { return pending; }
+
+    /**
+     * Reads every complete record of a journal file.
+     *
+     * Transactions are returned in the order they were appended. A reset marker is
+     * returned as null so the caller can clear the day's transactions at that point.
+     *
+     * @param fileName - the journal file
+     * @return list of the recorded transactions, null entries mark a reset
+     */
+
+    public static List<TransactionData> read(String fileName) throws IOException {
+        List<TransactionData> records = new ArrayList<TransactionData>();
+        File file = new File(fileName);
+        if (!file.exists() || file.length() < HEADER_LENGTH) {
+            return records;
+        }
+        checkHeader(file);
+        scan(file, records);
+        return records;
+    }
+
+    /*
+     * Reads the records of a journal whose header was checked, adding them to records (if not null)
+     * @return the length of the file up to the end of the last valid record
+     */
+    private static long scan(File file, List<TransactionData> records) throws IOException {
+        long end = HEADER_LENGTH;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        try {
+            in.readInt(); // MAGIC
+            in.readInt(); // VERSION
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] bytes;
+                try {
+                    int length = in.readInt();
+                    if (length < 1 || length > file.length()) {
+                        break; // torn write
+                    }
+                    bytes = new byte[length];
+                    in.readFully(bytes);
+                    int checksum = in.readInt();
+                    crc.reset();
+                    crc.update(bytes, 0, length);
+                    if ((int) crc.getValue() != checksum) {
+                        break; // torn write
+                    }
+                } catch (EOFException e) {
+                    break; // end of journal, or a record cut short by a crash
+                }
+                end += 4 + bytes.length + 4;
+                if (records == null) {
+                    continue;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+                byte kind = record.readByte();
+                if (kind == RESET) {
+                    records.add(null);
+                } else {
+                    String type = record.readUTF();
+                    String item = record.readUTF();
+                    int amount = record.readInt();
+                    double profit = record.readDouble();
+                    boolean success = record.readBoolean();
+                    records.add(new TransactionData(type, item, amount, profit, success));
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return end;
+    }
+
+    /*
+     * Makes sure an existing file is a journal this version can read
+     */
+    private static void checkHeader(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a transaction journal");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported journal version " + version);
+            }
+        } catch (EOFException e) {
+            throw new IOException(file + " has a truncated journal header");
+        } finally {
+            in.close();
+        }
+    }
+}